@@ -0,0 +1,161 @@
+// Implement a binary heap of variables ordered by their activity scores, for the VSIDS branching
+// heuristic in SATSolver and CDCLSolver. The activity of each variable in a conflict is bumped by
+// the current increment, and the older bumps decay over time. The activities do not depend on the
+// clause counts, so the heap does not need updating whenever some clause changes its status.
+
+public class ActivityHeap implements LiteralQueue {
+
+    // The activity of each variable 1, ..., n.
+    private double[] activity;
+    // The variables in this heap.
+    private int[] data;
+    // The location of each variable in the heap (0 if absent)
+    private int[] loc;
+    // The number of variables currently in the heap.
+    private int size;
+    // The amount by which the activity of a variable is bumped.
+    private double increment = 1.0;
+    // The factor by which the older bumps decay.
+    private final double decayFactor;
+    // Whether the decay is done by growing the increment (EVSIDS) instead of periodically
+    // scaling down all the activities (VSIDS).
+    private final boolean exponential;
+    // The number of conflicts seen, used to time the periodic decay of VSIDS.
+    private int conflicts = 0;
+    // How many conflicts there are between the periodic decays of VSIDS.
+    private static final int PERIOD = 256;
+    // The activities are scaled down when they grow larger than this, to avoid overflow.
+    private static final double LIMIT = 1e100;
+
+    // Constructor for the activity heap of n variables.
+    public ActivityHeap(int n, double decayFactor, boolean exponential) {
+        activity = new double[n + 1];
+        data = new int[n + 1];
+        loc = new int[n + 1];
+        size = 0;
+        this.decayFactor = decayFactor;
+        this.exponential = exponential;
+    }
+
+    // The EVSIDS heap of n variables, as in MiniSat.
+    public static ActivityHeap evsids(int n) {
+        return new ActivityHeap(n, 0.95, true);
+    }
+
+    // The original VSIDS heap of n variables, as in Chaff.
+    public static ActivityHeap vsids(int n) {
+        return new ActivityHeap(n, 0.5, false);
+    }
+
+    // Set the initial activity of the variable of literal e, before the variable is offered.
+    public void setActivity(int e, double a) {
+        int v = Math.abs(e);
+        assert loc[v] == 0;
+        activity[v] = a;
+    }
+
+    // The current activity of the variable of literal e.
+    public double getActivity(int e) {
+        return activity[Math.abs(e)];
+    }
+
+    // Current size of the heap.
+    public int getSize() {
+        return size;
+    }
+
+    // Check whether the variable of literal e is currently in this heap.
+    public boolean contains(int e) {
+        return loc[Math.abs(e)] > 0;
+    }
+
+    // Offer the variable of literal e to this heap, unless it is there already.
+    public void offer(int e) {
+        int v = Math.abs(e);
+        if(loc[v] > 0) { return; }
+        data[++size] = v;
+        loc[v] = size;
+        siftup(size);
+    }
+
+    // Extract the variable of the highest activity, returned as its positive literal.
+    public int poll() {
+        assert size > 0;
+        int v = data[1];
+        loc[v] = 0;
+        data[1] = data[size--];
+        if(size > 0) {
+            loc[data[1]] = 1;
+            siftdown(1);
+        }
+        return v;
+    }
+
+    // The activities do not depend on the clause counts, so there is nothing to update.
+    public void decrease(int e) { }
+    public void increase(int e) { }
+
+    // Bump the activity of the variable of literal e.
+    public void bump(int e) {
+        int v = Math.abs(e);
+        activity[v] += increment;
+        if(activity[v] > LIMIT) { rescale(); }
+        if(loc[v] > 0) { siftup(loc[v]); }
+    }
+
+    // Make the older bumps count for less than the future ones.
+    public void decay() {
+        if(exponential) {
+            increment /= decayFactor;
+            if(increment > LIMIT) { rescale(); }
+        }
+        else if(++conflicts % PERIOD == 0) {
+            // Scaling all activities by the same factor keeps the heap order intact.
+            for(int v = 1; v < activity.length; v++) { activity[v] *= decayFactor; }
+        }
+    }
+
+    // Scale down all activities and the increment by the same factor.
+    private void rescale() {
+        for(int v = 1; v < activity.length; v++) { activity[v] /= LIMIT; }
+        increment /= LIMIT;
+    }
+
+    // Move the element in position idx up in the heap as needed.
+    private void siftup(int idx) {
+        int v = data[idx];
+        double a = activity[v];
+        while(idx > 1) {
+            int pidx = idx / 2;
+            int pv = data[pidx];
+            if(activity[pv] < a) {
+                data[idx] = pv;
+                loc[pv] = idx;
+                idx = pidx;
+            }
+            else { break; }
+        }
+        data[idx] = v;
+        loc[v] = idx;
+    }
+
+    // Move the element in position idx down in the heap as needed.
+    private void siftdown(int idx) {
+        int v = data[idx];
+        double a = activity[v];
+        while(2 * idx <= size) {
+            int cidx = 2 * idx;
+            if(cidx + 1 <= size && activity[data[cidx]] < activity[data[cidx + 1]]) {
+                cidx = cidx + 1;
+            }
+            int cv = data[cidx];
+            if(activity[cv] > a) {
+                data[idx] = cv;
+                loc[cv] = idx;
+                idx = cidx;
+            } else { break; }
+        }
+        data[idx] = v;
+        loc[v] = idx;
+    }
+}
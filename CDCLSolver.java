@@ -0,0 +1,529 @@
+import java.util.*;
+
+// A conflict-driven clause learning solver for the same CNF clauses as SATSolver. Whenever unit
+// propagation leads into a conflict, the conflict is analyzed back to its first unique implication
+// point (1-UIP), the resulting clause is learned, and the search jumps back directly to the level
+// at which the learned clause becomes a unit clause, instead of simply undoing the latest decision.
+// The solver is incremental, so that more clauses can be added between the calls to solve, and
+// each call can make assumptions about the values of some literals. The learned clauses, the
+// literal priorities and the saved phases carry over from one call to the next.
+
+public class CDCLSolver {
+
+    // Some methods for measuring the effectiveness of the algorithm.
+    private int decisionCount = 0;
+    public int getDecisionCount() { return decisionCount; }
+    private int conflictCount = 0;
+    public int getConflictCount() { return conflictCount; }
+    private long propagationCount = 0;
+    public long getPropagationCount() { return propagationCount; }
+    public int getLearnedCount() { return learntCount; }
+    private int restartCount = 0;
+    public int getRestarts() { return restartCount; }
+
+    // The way of choosing the truth value of each decision.
+    private SATSolver.Polarity polarity = SATSolver.Polarity.CLAUSE_COUNT;
+    // Set when the search should stop as soon as possible.
+    private volatile boolean cancelled = false;
+    // The policy that decides when to restart, or null for no restarts.
+    private RestartPolicy restarts = null;
+    // Whether the saved phases are used to choose the polarity of each decision.
+    private boolean phaseSaving = false;
+    // The value that each variable had when it was last unassigned: +1, -1, or 0 if never.
+    private int[] phase;
+
+    // Calculate the index where literal is stored. The negation of index idx is then idx ^ 1.
+    private static int getIdx(int literal) {
+        if(literal < 0) { return 2 * (-literal) - 1; }
+        else { return 2 * literal - 2; }
+    }
+
+    // The number of propositional variables in the system.
+    private final int n;
+    // Every clause is stored in this array as its length followed by its literals. The clause is
+    // referred to by the position of its length. The first two literals are the watched ones.
+    private int[] arena = new int[1024];
+    private int arenaSize = 0;
+    // References to the clauses that were learned during the search.
+    private int[] learnts = new int[64];
+    private int learntCount = 0;
+    // For each literal index, the references of the clauses in which that literal is watched.
+    private int[][] watches;
+    private int[] watchCount;
+    // Current value of each variable: +1 for true, -1 for false, 0 for unassigned.
+    private int[] value;
+    // The decision level at which each variable was assigned.
+    private int[] level;
+    // The clause that forced the value of each variable, or -1 for decisions and top level units.
+    private int[] reason;
+    // The assigned literals in the order of assignment, and the head of the propagation queue.
+    private int[] trail;
+    private int trailSize = 0, qhead = 0;
+    // The position in the trail where each decision level starts.
+    private int[] trailLim;
+    // Decisions made in this search path, indexed by decision level.
+    private int[] decisions;
+    private int decisionLevel = 0;
+    // Whether the clauses are known to be unsatisfiable even without any decisions.
+    private boolean inconsistent = false;
+    // The assumptions of the current call to solve, and those that caused it to fail.
+    private int[] assumptions = new int[0];
+    private int[] failed = new int[0];
+    // Variables already encountered during the current conflict analysis.
+    private boolean[] seen;
+    // Buffer for building the clause learned from the current conflict.
+    private int[] learnt;
+    private int learntSize;
+    // The literal block distance of the learned clause, that is, its number of distinct levels.
+    private int learntLBD;
+    // Marks for the decision levels already counted in the literal block distance.
+    private int[] levelStamp;
+    private int stamp = 0;
+    // Counter of how many clauses each literal appears in, used as branching priority.
+    private int[] clauseCount;
+    // The priority queue of literals to branch on.
+    private LiteralQueue literalQueue;
+    // The heuristic that orders the literals, and the seed for breaking ties.
+    private SATSolver.Heuristic heuristic = SATSolver.Heuristic.CLAUSE_COUNT;
+    private long seed = 0;
+
+    /**
+     * Create a solver for the set of CNF clauses for variables 1, ..., {@code n}.
+     * @param n The number of propositional variables in the system.
+     * @param clauses The array of clauses in the same format as in {@code SATSolver.solveDPLL}.
+     */
+    public CDCLSolver(int n, int[][] clauses) {
+        this.n = n;
+        watches = new int[2 * n][];
+        watchCount = new int[2 * n];
+        for(int i = 0; i < 2 * n; i++) { watches[i] = new int[4]; }
+        value = new int[n + 1];
+        level = new int[n + 1];
+        reason = new int[n + 1];
+        Arrays.fill(reason, -1);
+        trail = new int[n];
+        trailLim = new int[n + 2];
+        decisions = new int[n + 2];
+        seen = new boolean[n + 1];
+        learnt = new int[n + 1];
+        phase = new int[n + 1];
+        levelStamp = new int[n + 2];
+        clauseCount = new int[2 * n];
+        for(int c = 0; c < clauses.length; c++) {
+            // Ignore nonexistent and empty clauses.
+            if(clauses[c] == null || clauses[c].length == 0) { continue; }
+            checkLiterals(clauses[c], "clause " + c);
+            for(int literal: clauses[c]) { clauseCount[getIdx(literal)]++; }
+            storeOriginal(clauses[c]);
+        }
+        setSeed(0);
+    }
+
+    /**
+     * Add a new clause to the problem of this solver. The clause stays in effect for all later
+     * calls to {@code solve}, whose learned clauses remain valid since the problem only grows.
+     * @param clause The literals of the clause, in the same format as in {@code SATSolver.solveDPLL}.
+     * An empty clause makes the problem unsatisfiable.
+     */
+    public void addClause(int... clause) {
+        checkLiterals(clause, "added clause");
+        // New clauses are added at the top level, where only the fixed literals are assigned.
+        cancelUntil(0);
+        for(int literal: clause) {
+            clauseCount[getIdx(literal)]++;
+            literalQueue.increase(literal);
+        }
+        storeOriginal(clause);
+    }
+
+    // Make sure that the literals are legal literals for the n variables.
+    private void checkLiterals(int[] literals, String where) {
+        for(int literal: literals) {
+            if(literal == 0 || literal < -n || literal > n) {
+                throw new IllegalArgumentException("Illegal literal value " + literal + " in " + where);
+            }
+        }
+    }
+
+    /**
+     * Set the way of choosing the truth value of each decision.
+     * @param polarity The polarity policy, {@code CLAUSE_COUNT} by default.
+     */
+    public void setPolarity(SATSolver.Polarity polarity) { this.polarity = polarity; }
+
+    /**
+     * Set the policy that decides when the search restarts from the top.
+     * @param restartPolicy The restart policy, or {@code null} for no restarts, which is the default.
+     */
+    public void setRestartPolicy(RestartPolicy restartPolicy) {
+        this.restarts = restartPolicy == null ? null : restartPolicy.copy();
+    }
+
+    /**
+     * Set whether each decision uses the value that the variable had when it was last assigned.
+     * @param phaseSaving Whether to use phase saving, false by default.
+     */
+    public void setPhaseSaving(boolean phaseSaving) { this.phaseSaving = phaseSaving; }
+
+    /**
+     * Set the seed used to randomly break ties between literals of equal priority.
+     * @param seed The seed of the random tie-breaking, or zero for no random tie-breaking.
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+        literalQueue = SATSolver.createQueue(heuristic, clauseCount, n, seed);
+    }
+
+    /**
+     * Set the heuristic that orders the literals to branch on.
+     * @param heuristic The branching heuristic, {@code CLAUSE_COUNT} by default.
+     */
+    public void setHeuristic(SATSolver.Heuristic heuristic) {
+        this.heuristic = heuristic;
+        setSeed(seed);
+    }
+
+    /**
+     * Ask this solver to stop its search as soon as possible. This method can be called from any
+     * thread, after which {@code solve} returns {@code null} and {@code isCancelled} returns true.
+     */
+    public void cancel() { cancelled = true; }
+
+    /**
+     * Check whether the search of this solver was cancelled.
+     * @return Whether {@code cancel} has been called for this solver.
+     */
+    public boolean isCancelled() { return cancelled; }
+
+    /**
+     * Search for a solution for the clauses given to the constructor and added since.
+     * @return Solution array of {@code n + 1} elements giving the truth value of each variable,
+     * or {@code null} if there is no solution to the clauses.
+     */
+    public boolean[] solve() {
+        return solve(new int[0]);
+    }
+
+    /**
+     * Returns the assumptions of the most recent call to {@code solve} that together made the
+     * clauses unsatisfiable. The set is not necessarily minimal, and it is empty if the clauses
+     * are unsatisfiable without any assumptions or if a solution was found.
+     * @return The array of failed assumption literals.
+     */
+    public int[] getFailedAssumptions() { return failed.clone(); }
+
+    /**
+     * Search for a solution for the clauses in which the given assumption literals are true.
+     * The assumptions hold only for this call. If there is no such solution, the assumptions
+     * responsible for that are available from {@code getFailedAssumptions} afterwards.
+     * @param assumptions The literals assumed to be true.
+     * @return Solution array of {@code n + 1} elements giving the truth value of each variable,
+     * or {@code null} if there is no solution to the clauses under the assumptions.
+     */
+    public boolean[] solve(int... assumptions) {
+        checkLiterals(assumptions, "assumptions");
+        this.assumptions = assumptions.clone();
+        failed = new int[0];
+        // Each assumption may take a decision level of its own on top of the real decisions.
+        if(trailLim.length < n + assumptions.length + 2) {
+            trailLim = Arrays.copyOf(trailLim, n + assumptions.length + 2);
+            decisions = Arrays.copyOf(decisions, n + assumptions.length + 2);
+            levelStamp = Arrays.copyOf(levelStamp, n + assumptions.length + 2);
+        }
+        cancelUntil(0);
+        if(inconsistent) { return null; }
+        while(true) {
+            if(cancelled) { return null; }
+            int confl = propagate();
+            if(confl != -1) {
+                conflictCount++;
+                // A conflict without any decisions means that there is no solution.
+                if(decisionLevel == 0) { inconsistent = true; return null; }
+                // Learn the 1-UIP clause and jump back to where it becomes a unit clause.
+                int jumpLevel = analyze(confl);
+                literalQueue.decay();
+                cancelUntil(jumpLevel);
+                if(learntSize == 1) {
+                    enqueue(learnt[0], -1);
+                }
+                else {
+                    int cr = storeClause(learnt, learntSize);
+                    if(learntCount == learnts.length) { learnts = Arrays.copyOf(learnts, 2 * learntCount); }
+                    learnts[learntCount++] = cr;
+                    enqueue(learnt[0], cr);
+                }
+                // The learned clauses and the saved phases remain when starting over.
+                if(restarts != null && restarts.conflict(learntLBD)) {
+                    restartCount++;
+                    cancelUntil(0);
+                }
+            }
+            else {
+                int literal = 0;
+                // The assumptions are made first, each as a decision of its own level.
+                while(decisionLevel < this.assumptions.length) {
+                    int p = this.assumptions[decisionLevel];
+                    if(litValue(p) > 0) {
+                        // Already implied by the earlier assumptions, so this level stays empty.
+                        decisionLevel++;
+                        trailLim[decisionLevel] = trailSize;
+                        decisions[decisionLevel] = p;
+                    }
+                    else if(litValue(p) < 0) {
+                        // The earlier assumptions imply the negation of this one.
+                        analyzeFinal(p);
+                        return null;
+                    }
+                    else { literal = p; break; }
+                }
+                if(literal == 0) { literal = pickBranchLiteral(); }
+                // Every variable has been assigned without conflict, so the problem has been solved.
+                if(literal == 0) { break; }
+                decisionCount++;
+                decisionLevel++;
+                trailLim[decisionLevel] = trailSize;
+                decisions[decisionLevel] = literal;
+                enqueue(literal, -1);
+            }
+        }
+        // Convert the variable values to truth values to return to caller.
+        boolean[] solutionB = new boolean[n + 1];
+        for(int v = 1; v <= n; v++) {
+            solutionB[v] = value[v] > 0;
+        }
+        return solutionB;
+    }
+
+    // The value of the literal under the current assignment: +1 true, -1 false, 0 unassigned.
+    private int litValue(int literal) {
+        return literal > 0 ? value[literal] : -value[-literal];
+    }
+
+    // Add the given original clause to the solver, simplifying it with the top level assignment.
+    private void storeOriginal(int[] clause) {
+        int[] lits = clause.clone();
+        Arrays.sort(lits);
+        int size = 0;
+        for(int i = 0; i < lits.length; i++) {
+            int literal = lits[i];
+            // Remove duplicate literals.
+            if(size > 0 && lits[size - 1] == literal) { continue; }
+            // A clause that contains both some literal and its negation is always true.
+            if(Arrays.binarySearch(lits, -literal) >= 0) { return; }
+            int val = litValue(literal);
+            // A clause that is already true at top level can be ignored.
+            if(val > 0) { return; }
+            // A literal that is already false at top level can be left out of the clause.
+            if(val == 0) { lits[size++] = literal; }
+        }
+        if(size == 0) { inconsistent = true; }
+        else if(size == 1) { enqueue(lits[0], -1); }
+        else { storeClause(lits, size); }
+    }
+
+    // Store the clause of given size to the arena, watching its first two literals.
+    private int storeClause(int[] lits, int size) {
+        if(arenaSize + size + 1 > arena.length) {
+            arena = Arrays.copyOf(arena, Math.max(2 * arena.length, arenaSize + size + 1));
+        }
+        int cr = arenaSize;
+        arena[cr] = size;
+        System.arraycopy(lits, 0, arena, cr + 1, size);
+        arenaSize += size + 1;
+        watch(getIdx(lits[0]), cr);
+        watch(getIdx(lits[1]), cr);
+        return cr;
+    }
+
+    // Add the clause cr to the watch list of the literal of index idx.
+    private void watch(int idx, int cr) {
+        if(watchCount[idx] == watches[idx].length) {
+            watches[idx] = Arrays.copyOf(watches[idx], 2 * watchCount[idx]);
+        }
+        watches[idx][watchCount[idx]++] = cr;
+    }
+
+    // Make the literal true at the current decision level, forced by the clause cr.
+    private void enqueue(int literal, int cr) {
+        int v = Math.abs(literal);
+        value[v] = literal > 0 ? +1 : -1;
+        level[v] = decisionLevel;
+        reason[v] = cr;
+        trail[trailSize++] = literal;
+    }
+
+    /*
+     * Propagate all enqueued literals using the watched clauses.
+     * Returns the reference of a clause that became false, or -1 if there was no conflict.
+     */
+    private int propagate() {
+        while(qhead < trailSize) {
+            int p = trail[qhead++];
+            propagationCount++;
+            // Only the clauses that watch the negation of p need to be examined.
+            int falseIdx = getIdx(-p);
+            int[] ws = watches[falseIdx];
+            int wn = watchCount[falseIdx];
+            int i = 0, j = 0;
+            watchLoop:
+            while(i < wn) {
+                int cr = ws[i++];
+                // Make sure that the literal that became false is the second watched literal.
+                if(arena[cr + 1] == -p) {
+                    arena[cr + 1] = arena[cr + 2];
+                    arena[cr + 2] = -p;
+                }
+                int first = arena[cr + 1];
+                // If the first watched literal is true, the clause is satisfied already.
+                if(litValue(first) > 0) {
+                    ws[j++] = cr; continue;
+                }
+                // Look for some other literal that is not false to watch instead.
+                int size = arena[cr];
+                for(int k = 3; k <= size; k++) {
+                    int literal = arena[cr + k];
+                    if(litValue(literal) >= 0) {
+                        arena[cr + 2] = literal;
+                        arena[cr + k] = -p;
+                        watch(getIdx(literal), cr);
+                        continue watchLoop;
+                    }
+                }
+                // No such literal exists, so the clause is either unit or false.
+                ws[j++] = cr;
+                if(litValue(first) < 0) {
+                    while(i < wn) { ws[j++] = ws[i++]; }
+                    watchCount[falseIdx] = j;
+                    qhead = trailSize;
+                    return cr;
+                }
+                enqueue(first, cr);
+            }
+            watchCount[falseIdx] = j;
+        }
+        return -1;
+    }
+
+    /*
+     * Analyze the conflict caused by clause confl to find its first unique implication point.
+     * The learned clause is left in the learnt buffer with the asserting literal first and the
+     * literal of the highest remaining decision level second. Returns the level to jump back to.
+     */
+    private int analyze(int confl) {
+        int pathCount = 0, p = 0, index = trailSize - 1;
+        learntSize = 1;
+        do {
+            int size = arena[confl];
+            // The first literal of a reason clause is the literal p that it forced.
+            for(int k = (p == 0 ? 1 : 2); k <= size; k++) {
+                int q = arena[confl + k];
+                int v = Math.abs(q);
+                if(!seen[v] && level[v] > 0) {
+                    seen[v] = true;
+                    literalQueue.bump(q);
+                    // Literals of the current level are resolved away, others go to the learned clause.
+                    if(level[v] >= decisionLevel) { pathCount++; }
+                    else { learnt[learntSize++] = q; }
+                }
+            }
+            // Find the next literal of the current level to resolve on from the trail.
+            while(!seen[Math.abs(trail[index--])]);
+            p = trail[index + 1];
+            confl = reason[Math.abs(p)];
+            seen[Math.abs(p)] = false;
+            pathCount--;
+        } while(pathCount > 0);
+        learnt[0] = -p;
+        // Find the highest decision level among the other literals of the learned clause.
+        int jumpLevel = 0, maxIdx = 1;
+        for(int i = 1; i < learntSize; i++) {
+            int v = Math.abs(learnt[i]);
+            seen[v] = false;
+            if(level[v] > jumpLevel) { jumpLevel = level[v]; maxIdx = i; }
+        }
+        // That literal becomes the second watched literal of the learned clause.
+        int tmp = learnt[1]; learnt[1] = learnt[maxIdx]; learnt[maxIdx] = tmp;
+        learntLBD = computeLBD(learnt, learntSize);
+        return jumpLevel;
+    }
+
+    /*
+     * Find the assumptions that imply the negation of the assumption p, by following the reasons
+     * of the literals back from the negation of p. Since only assumptions have been decided at
+     * this point, every decision reached is an assumption.
+     */
+    private void analyzeFinal(int p) {
+        int[] core = new int[assumptions.length];
+        int coreSize = 0;
+        core[coreSize++] = p;
+        int vp = Math.abs(p);
+        if(level[vp] > 0) {
+            seen[vp] = true;
+            for(int i = trailSize - 1; i >= trailLim[1]; i--) {
+                int v = Math.abs(trail[i]);
+                if(!seen[v]) { continue; }
+                if(reason[v] == -1) { core[coreSize++] = trail[i]; }
+                else {
+                    int cr = reason[v];
+                    for(int k = 2; k <= arena[cr]; k++) {
+                        int u = Math.abs(arena[cr + k]);
+                        if(level[u] > 0) { seen[u] = true; }
+                    }
+                }
+                seen[v] = false;
+            }
+        }
+        failed = Arrays.copyOf(core, coreSize);
+    }
+
+    // The number of distinct decision levels among the given literals.
+    private int computeLBD(int[] lits, int size) {
+        stamp++;
+        int lbd = 0;
+        for(int i = 0; i < size; i++) {
+            int lvl = level[Math.abs(lits[i])];
+            if(levelStamp[lvl] != stamp) {
+                levelStamp[lvl] = stamp;
+                lbd++;
+            }
+        }
+        return lbd;
+    }
+
+    // Undo all assignments made above the given decision level.
+    private void cancelUntil(int lvl) {
+        if(decisionLevel <= lvl) { return; }
+        for(int i = trailSize - 1; i >= trailLim[lvl + 1]; i--) {
+            int literal = trail[i];
+            int v = Math.abs(literal);
+            phase[v] = value[v];
+            value[v] = 0;
+            reason[v] = -1;
+            // Put both literals of the variable back to the queue, unless they are still there.
+            if(!literalQueue.contains(literal)) { literalQueue.offer(literal); }
+            if(!literalQueue.contains(-literal)) { literalQueue.offer(-literal); }
+        }
+        trailSize = qhead = trailLim[lvl + 1];
+        decisionLevel = lvl;
+    }
+
+    // Pop literals from the queue until an unassigned one is found, or return 0 if none remain.
+    private int pickBranchLiteral() {
+        while(literalQueue.getSize() > 0) {
+            int literal = literalQueue.poll();
+            int v = Math.abs(literal);
+            if(value[v] == 0) {
+                if(phaseSaving && phase[v] != 0) { return phase[v] * v; }
+                switch(polarity) {
+                    case POSITIVE: return Math.abs(literal);
+                    case NEGATIVE: return -Math.abs(literal);
+                    case REVERSE_COUNT:
+                        return clauseCount[getIdx(literal)] < clauseCount[getIdx(-literal)] ? literal : -literal;
+                    default:
+                        return clauseCount[getIdx(literal)] < clauseCount[getIdx(-literal)] ? -literal : literal;
+                }
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,106 @@
+import java.util.*;
+
+// Compare the encodings of cardinality constraints in the number of variables and clauses that
+// they create and in the time that the solvers need for the resulting problems: the hardest Sudoku
+// solved with DPLL, word packing of random words solved with incremental CDCL, and at most k out
+// of n constraints over random 3-SAT problems solved with CDCL.
+
+public class CardinalityBenchmark {
+
+    // https://puzzling.stackexchange.com/questions/305/why-is-this-considered-to-be-the-worlds-hardest-sudoku
+    private static final int[][] SUDOKU = {
+        {8,0,0,0,0,0,0,0,0},
+        {0,0,3,6,0,0,0,0,0},
+        {0,7,0,0,9,0,2,0,0},
+        {0,5,0,0,0,7,0,0,0},
+        {0,0,0,0,4,5,7,0,0},
+        {0,0,0,1,0,0,0,3,0},
+        {0,0,1,0,0,0,0,6,8},
+        {0,0,8,5,0,0,0,1,0},
+        {0,9,0,0,0,0,4,0,0}
+    };
+
+    // Create a list of n distinct random five letter words over the first letters of the alphabet.
+    private static List<String> randomWords(int n, int letters, Random rng) {
+        Set<String> words = new LinkedHashSet<String>();
+        while(words.size() < n) {
+            StringBuilder sb = new StringBuilder();
+            for(int i = 0; i < 5; i++) { sb.append((char)('a' + rng.nextInt(letters))); }
+            words.add(sb.toString());
+        }
+        return new ArrayList<String>(words);
+    }
+
+    // Solve random 3-SAT problems with the additional constraint that at most k variables are
+    // true, and report the size of the encoding and the total solving time.
+    private static void measureAtMost(CardinalityEncoder.Encoding encoding, int n, int k, int rounds, long seed) {
+        Random rng = new Random(seed);
+        long time = 0, clauseCount = 0, variableCount = 0;
+        int sat = 0;
+        for(int r = 0; r < rounds; r++) {
+            CardinalityEncoder clauses = new CardinalityEncoder(n, encoding);
+            for(int i = 0; i < 2 * n; i++) {
+                int[] c = new int[3];
+                for(int j = 0; j < 3; j++) {
+                    int v = rng.nextInt(n) + 1;
+                    c[j] = rng.nextInt(4) == 0 ? v : -v;
+                }
+                if(Math.abs(c[0]) != Math.abs(c[1]) && Math.abs(c[0]) != Math.abs(c[2])
+                && Math.abs(c[1]) != Math.abs(c[2])) { clauses.addClause(c); }
+            }
+            int[] all = new int[n];
+            for(int v = 1; v <= n; v++) { all[v - 1] = v; }
+            clauses.atMost(k, all);
+            clauseCount += clauses.getClauseCount();
+            variableCount += clauses.getVariableCount();
+            long startTime = System.nanoTime();
+            if(new CDCLSolver(clauses.getVariableCount(), clauses.getClauses()).solve() != null) { sat++; }
+            time += System.nanoTime() - startTime;
+        }
+        System.out.printf("At most %d of %d %-20s %8d variables, %9d clauses, %3d satisfiable, %7d ms%n",
+        k, n, encoding, variableCount / rounds, clauseCount / rounds, sat, time / 1000000);
+    }
+
+    /**
+     * Run the comparison with the seed and the encodings given on the command line.
+     * @param args The seed of the random problems, followed by the names of the encodings to
+     * compare. The totalizer and the cardinality network make the search for Sudoku and for some
+     * word packings take minutes, so by default only the other two encodings are compared.
+     */
+    public static void main(String[] args) {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : 12345;
+        List<CardinalityEncoder.Encoding> encodings = new ArrayList<CardinalityEncoder.Encoding>();
+        for(int i = 1; i < args.length; i++) { encodings.add(CardinalityEncoder.Encoding.valueOf(args[i])); }
+        if(encodings.isEmpty()) {
+            encodings.add(CardinalityEncoder.Encoding.PAIRWISE);
+            encodings.add(CardinalityEncoder.Encoding.SEQUENTIAL_COUNTER);
+        }
+        for(CardinalityEncoder.Encoding encoding: encodings) {
+            System.out.println("Sudoku with " + encoding + ":");
+            int[][] board = new int[9][];
+            for(int i = 0; i < 9; i++) { board[i] = SUDOKU[i].clone(); }
+            SudokuLogic.solve(board, encoding);
+        }
+        List<List<String>> wordSets = new ArrayList<List<String>>();
+        Random rng = new Random(seed);
+        for(int i = 0; i < 8; i++) { wordSets.add(randomWords(30 + rng.nextInt(30), 8, rng)); }
+        for(CardinalityEncoder.Encoding encoding: encodings) {
+            long time = 0, clauseCount = 0, variableCount = 0;
+            int bins = 0;
+            for(List<String> words: wordSets) {
+                long startTime = System.nanoTime();
+                bins += WordPacking.wordPack(words, encoding).size();
+                time += System.nanoTime() - startTime;
+                clauseCount += WordPacking.getClauseCount();
+                variableCount += WordPacking.getVariableCount();
+            }
+            System.out.printf("Word packing with %-20s %8d variables, %9d clauses, %4d bins in total, %7d ms%n",
+            encoding, variableCount / wordSets.size(), clauseCount / wordSets.size(), bins, time / 1000000);
+        }
+        for(CardinalityEncoder.Encoding encoding: CardinalityEncoder.Encoding.values()) {
+            // The pairwise encoding of at most k needs a clause for every subset of k + 1 variables.
+            if(encoding != CardinalityEncoder.Encoding.PAIRWISE) { measureAtMost(encoding, 300, 60, 5, seed); }
+            measureAtMost(encoding, 300, 1, 5, seed);
+        }
+    }
+}
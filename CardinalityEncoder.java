@@ -0,0 +1,341 @@
+import java.util.*;
+
+// Build CNF clauses for cardinality constraints that say that at most, at least or exactly k of
+// the given literals are true. The naive pairwise encoding needs a clause for every subset of k + 1
+// literals, which is quadratic already for at most one, whereas the sequential counter, the
+// totalizer and the cardinality network introduce auxiliary variables that count the true literals
+// in unary, so that the number of clauses grows only about linearly in the number of literals. The
+// auxiliary variables are numbered after the n variables of the problem, and the clauses are
+// collected in this builder, to be given to the solver along with the total number of variables.
+
+public class CardinalityEncoder {
+
+    /**
+     * The ways to encode a cardinality constraint into clauses.
+     */
+    public enum Encoding {
+        /** No auxiliary variables, one clause for each subset of k + 1 literals that cannot all
+         * be true together. Only sensible for small k, most of all for at most one. */
+        PAIRWISE,
+        /** The sequential counter of Sinz, where the auxiliary variable s(i, j) says that at least
+         * j of the first i literals are true. Takes about 2nk clauses. */
+        SEQUENTIAL_COUNTER,
+        /** The totalizer of Bailleux and Boufkhad, which counts the true literals in a binary tree
+         * of unary counters, each counting only up to k + 1. */
+        TOTALIZER,
+        /** The cardinality network of Asin et al., which sorts the literals with merging networks
+         * of two-comparators, keeping only the top outputs of each merge. */
+        CARDINALITY_NETWORK
+    }
+
+    // The encoding used for the constraints.
+    private final Encoding encoding;
+    // The number of variables used so far, the problem variables and the auxiliary variables.
+    private int variables;
+    // The clauses built so far.
+    private final List<int[]> clauses = new ArrayList<int[]>();
+    // The auxiliary variable that is always false, or zero if not yet needed.
+    private int falseVar = 0;
+
+    /**
+     * Create a builder whose auxiliary variables are numbered after the variables 1, ..., {@code n}.
+     * @param n The number of variables of the problem itself.
+     * @param encoding The encoding of the cardinality constraints.
+     */
+    public CardinalityEncoder(int n, Encoding encoding) {
+        this.variables = n;
+        this.encoding = encoding;
+    }
+
+    /**
+     * Returns the total number of variables, that of the problem and the auxiliary variables.
+     * @return The number of variables.
+     */
+    public int getVariableCount() { return variables; }
+
+    /**
+     * Returns the number of clauses built so far.
+     * @return The number of clauses.
+     */
+    public int getClauseCount() { return clauses.size(); }
+
+    /**
+     * Returns the clauses built so far, in the format of {@code SATSolver.solveDPLL}.
+     * @return The array of clauses.
+     */
+    public int[][] getClauses() { return clauses.toArray(new int[0][]); }
+
+    /**
+     * Create a new auxiliary variable.
+     * @return The number of the new variable.
+     */
+    public int newVariable() { return ++variables; }
+
+    /**
+     * Add an ordinary clause to the clauses built.
+     * @param clause The literals of the clause.
+     */
+    public void addClause(int... clause) { clauses.add(clause); }
+
+    /**
+     * Add the clauses that allow at most one of the literals to be true.
+     * @param lits The literals.
+     */
+    public void atMostOne(int... lits) { atMost(1, lits); }
+
+    /**
+     * Add the clauses that require exactly one of the literals to be true.
+     * @param lits The literals.
+     */
+    public void exactlyOne(int... lits) { exactly(1, lits); }
+
+    /**
+     * Add the clauses that allow at most k of the literals to be true.
+     * @param k The largest number of true literals.
+     * @param lits The literals.
+     */
+    public void atMost(int k, int... lits) { encode(lits, k, true, false); }
+
+    /**
+     * Add the clauses that require at least k of the literals to be true.
+     * @param k The smallest number of true literals.
+     * @param lits The literals.
+     */
+    public void atLeast(int k, int... lits) { encode(lits, k, false, true); }
+
+    /**
+     * Add the clauses that require exactly k of the literals to be true.
+     * @param k The number of true literals.
+     * @param lits The literals.
+     */
+    public void exactly(int k, int... lits) { encode(lits, k, true, true); }
+
+    // Encode the constraint that at most k (if upper) and at least k (if lower) literals are true.
+    private void encode(int[] lits, int k, boolean upper, boolean lower) {
+        int n = lits.length;
+        // The constraints that can never hold get a clause that contradicts the false variable,
+        // since the solvers ignore empty clauses, and those that always hold need no clauses.
+        if((upper && k < 0) || (lower && k > n)) { clauses.add(new int[] { falseVariable() }); return; }
+        if(upper && k >= n) { upper = false; }
+        if(lower && k <= 0) { lower = false; }
+        if(!upper && !lower) { return; }
+        // Constraints that fix every literal are unit clauses, and at least one is a single clause.
+        if(upper && k == 0) {
+            for(int literal: lits) { clauses.add(new int[] { -literal }); }
+            upper = false;
+        }
+        if(lower && k == n) {
+            for(int literal: lits) { clauses.add(new int[] { literal }); }
+            lower = false;
+        }
+        if(lower && k == 1) {
+            clauses.add(lits.clone());
+            lower = false;
+        }
+        if(!upper && !lower) { return; }
+        // At least k is the same as at most n - k of the negations.
+        switch(encoding) {
+            case PAIRWISE:
+                if(upper) { pairwise(lits, k); }
+                if(lower) { pairwise(negate(lits), n - k); }
+                break;
+            case SEQUENTIAL_COUNTER:
+                if(upper) { sequential(lits, k); }
+                if(lower) { sequential(negate(lits), n - k); }
+                break;
+            case TOTALIZER: {
+                int[] out = totalizer(lits, 0, n, Math.min(n, k + 1), upper, lower);
+                if(upper) { clauses.add(new int[] { -out[k + 1] }); }
+                if(lower) { clauses.add(new int[] { out[k] }); }
+                break;
+            }
+            default: {
+                // The network sorts the literals into its outputs, of which the first m are kept.
+                int m = 1;
+                while(m < Math.min(n, k + 1)) { m *= 2; }
+                int size = (n + m - 1) / m * m;
+                int[] in = Arrays.copyOf(lits, size);
+                for(int i = n; i < size; i++) { in[i] = falseVariable(); }
+                int[] out = card(in, m, upper, lower);
+                if(upper) { clauses.add(new int[] { -out[k] }); }
+                if(lower) { clauses.add(new int[] { out[k - 1] }); }
+            }
+        }
+    }
+
+    // The auxiliary variable that is false in every solution.
+    private int falseVariable() {
+        if(falseVar == 0) {
+            falseVar = newVariable();
+            clauses.add(new int[] { -falseVar });
+        }
+        return falseVar;
+    }
+
+    // The negations of the literals.
+    private static int[] negate(int[] lits) {
+        int[] result = new int[lits.length];
+        for(int i = 0; i < lits.length; i++) { result[i] = -lits[i]; }
+        return result;
+    }
+
+    // At most k literals true as one clause for each subset of k + 1 literals, saying that
+    // one of them has to be false.
+    private void pairwise(int[] lits, int k) {
+        int[] chosen = new int[k + 1];
+        subsets(lits, 0, chosen, 0);
+    }
+
+    // Recursively choose the rest of the subset of negated literals, starting from position i.
+    private void subsets(int[] lits, int i, int[] chosen, int size) {
+        if(size == chosen.length) { clauses.add(chosen.clone()); return; }
+        for(int j = i; j <= lits.length - (chosen.length - size); j++) {
+            chosen[size] = -lits[j];
+            subsets(lits, j + 1, chosen, size + 1);
+        }
+    }
+
+    // At most k literals true with the sequential counter, for 0 < k < n.
+    private void sequential(int[] x, int k) {
+        int n = x.length;
+        // The counter variables of the previous literal, s[j] saying that at least j + 1 are true.
+        int[] prev = new int[k];
+        for(int j = 0; j < k; j++) { prev[j] = newVariable(); }
+        clauses.add(new int[] { -x[0], prev[0] });
+        for(int j = 1; j < k; j++) { clauses.add(new int[] { -prev[j] }); }
+        for(int i = 1; i < n - 1; i++) {
+            int[] s = new int[k];
+            for(int j = 0; j < k; j++) { s[j] = newVariable(); }
+            clauses.add(new int[] { -x[i], s[0] });
+            clauses.add(new int[] { -prev[0], s[0] });
+            for(int j = 1; j < k; j++) {
+                clauses.add(new int[] { -x[i], -prev[j - 1], s[j] });
+                clauses.add(new int[] { -prev[j], s[j] });
+            }
+            clauses.add(new int[] { -x[i], -prev[k - 1] });
+            prev = s;
+        }
+        clauses.add(new int[] { -x[n - 1], -prev[k - 1] });
+    }
+
+    /*
+     * The totalizer of the literals in positions from, ..., to - 1, whose outputs out[1], ...,
+     * out[cap] say in unary how many of them are true, counting up to cap. The clauses that make
+     * the outputs true when enough literals are true are needed for at most constraints, and
+     * those that make them false when too few literals are true for at least constraints.
+     */
+    private int[] totalizer(int[] lits, int from, int to, int cap, boolean upper, boolean lower) {
+        int size = Math.min(to - from, cap);
+        int[] out = new int[size + 1];
+        if(to - from == 1) { out[1] = lits[from]; return out; }
+        int mid = (from + to) / 2;
+        int[] a = totalizer(lits, from, mid, cap, upper, lower);
+        int[] b = totalizer(lits, mid, to, cap, upper, lower);
+        for(int r = 1; r <= size; r++) { out[r] = newVariable(); }
+        int na = a.length - 1, nb = b.length - 1;
+        for(int i = 0; i <= na; i++) {
+            for(int j = 0; j <= nb; j++) {
+                // Literals a[i] and b[j] true make out[i + j] true.
+                if(upper && i + j >= 1) {
+                    int r = Math.min(i + j, size);
+                    if(i == 0) { clauses.add(new int[] { -b[j], out[r] }); }
+                    else if(j == 0) { clauses.add(new int[] { -a[i], out[r] }); }
+                    else { clauses.add(new int[] { -a[i], -b[j], out[r] }); }
+                }
+                // Literals a[i + 1] and b[j + 1] false make out[i + j + 1] false, where the literals
+                // past the end of an uncapped counter are false.
+                if(lower && i + j + 1 <= size) {
+                    int r = i + j + 1;
+                    if(i == na) { clauses.add(new int[] { b[j + 1], -out[r] }); }
+                    else if(j == nb) { clauses.add(new int[] { a[i + 1], -out[r] }); }
+                    else { clauses.add(new int[] { a[i + 1], b[j + 1], -out[r] }); }
+                }
+            }
+        }
+        return out;
+    }
+
+    /*
+     * The cardinality network of the literals, whose number is a multiple of m, a power of two.
+     * Returns the m outputs, the first one true if at least one literal is true, and so on.
+     */
+    private int[] card(int[] a, int m, boolean upper, boolean lower) {
+        if(a.length == m) { return sort(a, upper, lower); }
+        int[] d = card(Arrays.copyOfRange(a, 0, m), m, upper, lower);
+        int[] e = card(Arrays.copyOfRange(a, m, a.length), m, upper, lower);
+        return Arrays.copyOf(simplifiedMerge(d, e, upper, lower), m);
+    }
+
+    // Sort the literals, whose number is a power of two, with a merging network.
+    private int[] sort(int[] a, boolean upper, boolean lower) {
+        if(a.length == 1) { return a.clone(); }
+        int h = a.length / 2;
+        int[] d = sort(Arrays.copyOfRange(a, 0, h), upper, lower);
+        int[] e = sort(Arrays.copyOfRange(a, h, a.length), upper, lower);
+        return merge(d, e, upper, lower);
+    }
+
+    // Merge two sorted sequences of the same length, a power of two, into one sorted sequence.
+    private int[] merge(int[] a, int[] b, boolean upper, boolean lower) {
+        int n = a.length;
+        int[] c = new int[2 * n];
+        if(n == 1) { comparator(a[0], b[0], c, 0, upper, lower); return c; }
+        int[] d = merge(odds(a), odds(b), upper, lower);
+        int[] e = merge(evens(a), evens(b), upper, lower);
+        c[0] = d[0];
+        c[2 * n - 1] = e[n - 1];
+        for(int i = 0; i < n - 1; i++) { comparator(d[i + 1], e[i], c, 2 * i + 1, upper, lower); }
+        return c;
+    }
+
+    // Merge two sorted sequences of the same length n, a power of two, keeping only the first
+    // n + 1 outputs of the merged sequence.
+    private int[] simplifiedMerge(int[] a, int[] b, boolean upper, boolean lower) {
+        int n = a.length;
+        if(n == 1) { return merge(a, b, upper, lower); }
+        int[] d = simplifiedMerge(odds(a), odds(b), upper, lower);
+        int[] e = simplifiedMerge(evens(a), evens(b), upper, lower);
+        int[] c = new int[n + 2];
+        c[0] = d[0];
+        for(int i = 0; i < n / 2; i++) { comparator(d[i + 1], e[i], c, 2 * i + 1, upper, lower); }
+        return Arrays.copyOf(c, n + 1);
+    }
+
+    // The elements in the even positions 0, 2, 4, ..., which are the odd ones counting from one.
+    private static int[] odds(int[] a) {
+        int[] result = new int[a.length / 2];
+        for(int i = 0; i < result.length; i++) { result[i] = a[2 * i]; }
+        return result;
+    }
+
+    // The elements in the odd positions 1, 3, 5, ..., which are the even ones counting from one.
+    private static int[] evens(int[] a) {
+        int[] result = new int[a.length / 2];
+        for(int i = 0; i < result.length; i++) { result[i] = a[2 * i + 1]; }
+        return result;
+    }
+
+    // A two-comparator that puts the larger of x and y to c[pos] and the smaller to c[pos + 1],
+    // with the clauses needed in the directions of the constraint.
+    private void comparator(int x, int y, int[] c, int pos, boolean upper, boolean lower) {
+        // The padding of false literals needs no comparators.
+        if(falseVar != 0 && (x == falseVar || y == falseVar)) {
+            c[pos] = x == falseVar ? y : x;
+            c[pos + 1] = falseVar;
+            return;
+        }
+        int max = newVariable(), min = newVariable();
+        if(upper) {
+            clauses.add(new int[] { -x, max });
+            clauses.add(new int[] { -y, max });
+            clauses.add(new int[] { -x, -y, min });
+        }
+        if(lower) {
+            clauses.add(new int[] { x, -min });
+            clauses.add(new int[] { y, -min });
+            clauses.add(new int[] { x, y, -max });
+        }
+        c[pos] = max;
+        c[pos + 1] = min;
+    }
+}
@@ -0,0 +1,252 @@
+import java.util.*;
+
+// Find the chromatic number of a graph, the smallest number of colours that can colour it so that
+// no two neighbours have the same colour. The search goes down from above: the greedy DSATUR
+// colouring gives the first upper bound, and every colouring found with one colour fewer than the
+// best so far gives a new one, until the IntColouringSolver engine shows that there is none. A
+// clique of the graph found greedily is a lower bound, since its vertices all need different
+// colours, and since the colours can be renamed freely, its vertices are given their colours in
+// advance. Each new search starts from the best colouring so far, as a hint of the colour to try
+// first for each vertex, with one of its colour classes left out and the others renamed so that
+// they agree with the clique.
+
+public class ChromaticNumberSolver {
+
+    /**
+     * A listener that is told every time the search finds a better lower or upper bound.
+     */
+    public interface BoundListener {
+        /**
+         * Report the bounds of the chromatic number known so far.
+         * @param lower The lower bound of the chromatic number.
+         * @param upper The number of colours of the best colouring found so far.
+         */
+        void bounds(int lower, int upper);
+    }
+
+    // The graph to colour, whose colours, domains and hints are not used.
+    private final IntColouringSolver graph;
+    // The listener of the bounds, or null for none.
+    private BoundListener listener = null;
+    // Whether each search starts from the best colouring so far.
+    private boolean warmStart = true;
+    // The solver of the current search, so that it can be asked to stop.
+    private volatile IntColouringSolver current = null;
+    private volatile boolean cancelled = false;
+
+    // The outcome and the statistics of the most recent call to solve.
+    private int lower = 0, upper = -1;
+    private int[] clique = new int[0];
+    private long callCount = 0;
+    private int searches = 0;
+
+    /**
+     * Create a solver for the chromatic number of the graph of vertices 0, ..., {@code n} - 1
+     * with the given edges, given as for {@code IntColouringSolver}.
+     * @param n The number of vertices.
+     * @param edges The edges as consecutive pairs of their end vertices.
+     */
+    public ChromaticNumberSolver(int n, int[] edges) {
+        this(new IntColouringSolver(n, edges, 1));
+    }
+
+    /**
+     * Create a solver for the chromatic number of the graph of the given solver, searching with
+     * its propagation and all-different constraints. Its colours and domains are not used.
+     * @param graph The solver of a colouring problem of the graph.
+     */
+    public ChromaticNumberSolver(IntColouringSolver graph) {
+        this.graph = graph;
+    }
+
+    /**
+     * Set the listener that is told about each improvement of the bounds during the search.
+     * @param listener The listener, or {@code null} for none, which is the default.
+     */
+    public void setBoundListener(BoundListener listener) { this.listener = listener; }
+
+    /**
+     * Set whether each search with fewer colours starts from the best colouring so far.
+     * @param warmStart Whether to start from the best colouring, true by default.
+     */
+    public void setWarmStart(boolean warmStart) { this.warmStart = warmStart; }
+
+    /**
+     * Ask this solver to stop its search as soon as possible, after which {@code solve} returns
+     * the best colouring found so far, and {@code isOptimal} returns false.
+     */
+    public void cancel() {
+        cancelled = true;
+        IntColouringSolver s = current;
+        if(s != null) { s.cancel(); }
+    }
+
+    /**
+     * Returns the number of colours of the colouring returned by the most recent call to {@code solve}.
+     * @return The upper bound of the chromatic number, or -1 if the graph cannot be coloured.
+     */
+    public int getUpperBound() { return upper; }
+
+    /**
+     * Returns the best lower bound of the chromatic number known at the end of the most recent
+     * call to {@code solve}. For an optimal colouring, this equals its number of colours.
+     * @return The lower bound.
+     */
+    public int getLowerBound() { return lower; }
+
+    /**
+     * Check whether the colouring returned by the most recent call to {@code solve} was proven
+     * optimal, by its number of colours meeting the lower bound.
+     * @return Whether the colouring is optimal.
+     */
+    public boolean isOptimal() { return upper >= 0 && lower == upper; }
+
+    /**
+     * Returns the clique found for the lower bound in the most recent call to {@code solve}.
+     * @return The vertices of the clique.
+     */
+    public int[] getClique() { return clique.clone(); }
+
+    /**
+     * Returns how many colouring searches the most recent call to {@code solve} made after the
+     * greedy colouring, including the last one that found no colouring, if any.
+     * @return The number of searches.
+     */
+    public int getSearchCount() { return searches; }
+
+    /**
+     * Accessor method for call count.
+     * @return The count of how many recursive calls all the searches made, the greedy
+     * colouring included.
+     */
+    public long getCallCount() { return callCount; }
+
+    /**
+     * Find a colouring of the graph with as few colours as possible.
+     * @return The array of the colours of the vertices, numbered from zero, or {@code null} if
+     * some vertex is its own neighbour, so that there is no colouring.
+     */
+    public int[] solve() {
+        int n = graph.getVertexCount();
+        lower = 0;
+        upper = -1;
+        callCount = 0;
+        searches = 0;
+        clique = new int[0];
+        // With one colour more than the largest degree, forward checking can never leave a vertex
+        // without colours, so the search is the greedy DSATUR colouring that never backtracks.
+        int maxDegree = 0;
+        for(int v = 0; v < n; v++) { maxDegree = Math.max(maxDegree, graph.getDegree(v)); }
+        IntColouringSolver greedy = new IntColouringSolver(graph, maxDegree + 1);
+        greedy.setPropagation(IntColouringSolver.Propagation.FORWARD_CHECKING);
+        int[] best = greedy.solve();
+        callCount += greedy.getCallCount();
+        if(best == null) { return null; }
+        upper = colourCount(best);
+        improved();
+        clique = findClique();
+        lower = clique.length;
+        improved();
+
+        while(lower < upper && !cancelled) {
+            IntColouringSolver solver = new IntColouringSolver(graph, upper - 1);
+            // Any colouring can be renamed so that the clique has the colours 0, 1, 2, ...
+            for(int i = 0; i < clique.length; i++) { solver.setDomain(clique[i], new int[] { i }); }
+            solver.setHint(warmStart ? warmStart(best) : null);
+            current = solver;
+            if(cancelled) { solver.cancel(); }
+            int[] colouring = solver.solve();
+            current = null;
+            searches++;
+            callCount += solver.getCallCount();
+            if(colouring == null) {
+                // No colouring with fewer colours proves the best colouring optimal.
+                if(!cancelled) {
+                    lower = upper;
+                    improved();
+                }
+                break;
+            }
+            best = colouring;
+            upper = colourCount(best);
+            improved();
+        }
+        return best;
+    }
+
+    // Tell the listener about the current bounds, if there is a listener.
+    private void improved() {
+        if(listener != null) { listener.bounds(lower, upper); }
+    }
+
+    // Rename the colours of the colouring to 0, 1, 2, ... in the order of their first appearance,
+    // and return the number of colours.
+    private static int colourCount(int[] colouring) {
+        int[] rename = new int[colouring.length + 1];
+        Arrays.fill(rename, -1);
+        int count = 0;
+        for(int v = 0; v < colouring.length; v++) {
+            int c = colouring[v];
+            if(rename[c] < 0) { rename[c] = count++; }
+            colouring[v] = rename[c];
+        }
+        return count;
+    }
+
+    // The hint for searching with one colour fewer than the colouring has: the colours of the
+    // clique are renamed to 0, 1, 2, ..., the smallest of the other colour classes is left out,
+    // and the remaining colours are renamed to follow those of the clique.
+    private int[] warmStart(int[] colouring) {
+        int[] size = new int[upper];
+        for(int c: colouring) { size[c]++; }
+        int[] rename = new int[upper];
+        Arrays.fill(rename, -1);
+        for(int i = 0; i < clique.length; i++) { rename[colouring[clique[i]]] = i; }
+        int dropped = -1;
+        for(int c = 0; c < upper; c++) {
+            if(rename[c] < 0 && (dropped < 0 || size[c] < size[dropped])) { dropped = c; }
+        }
+        int next = clique.length;
+        for(int c = 0; c < upper; c++) {
+            if(rename[c] < 0 && c != dropped) { rename[c] = next++; }
+        }
+        int[] hint = new int[colouring.length];
+        for(int v = 0; v < colouring.length; v++) { hint[v] = rename[colouring[v]]; }
+        return hint;
+    }
+
+    // Find a large clique greedily. From each vertex in turn, whose degree leaves room for a
+    // larger clique than the best so far, the clique grows with the neighbours of the vertex in
+    // decreasing order of degree, each one that is a neighbour of all the vertices added so far.
+    private int[] findClique() {
+        int n = graph.getVertexCount();
+        Integer[] order = new Integer[n];
+        for(int v = 0; v < n; v++) { order[v] = v; }
+        Arrays.sort(order, (u, v) -> graph.getDegree(v) - graph.getDegree(u));
+        // How many vertices of the current clique each vertex is a neighbour of.
+        int[] links = new int[n];
+        int[] best = new int[0];
+        int[] current = new int[n];
+        for(int v: order) {
+            if(graph.getDegree(v) + 1 <= best.length) { break; }
+            int[] candidates = graph.getNeighbours(v);
+            Integer[] sorted = new Integer[candidates.length];
+            for(int i = 0; i < candidates.length; i++) { sorted[i] = candidates[i]; }
+            Arrays.sort(sorted, (a, b) -> graph.getDegree(b) - graph.getDegree(a));
+            int size = 0;
+            current[size++] = v;
+            for(int u: graph.getNeighbours(v)) { links[u]++; }
+            for(int u: sorted) {
+                if(links[u] == size) {
+                    current[size++] = u;
+                    for(int w: graph.getNeighbours(u)) { links[w]++; }
+                }
+            }
+            if(size > best.length) { best = Arrays.copyOf(current, size); }
+            for(int i = 0; i < size; i++) {
+                for(int w: graph.getNeighbours(current[i])) { links[w]--; }
+            }
+        }
+        return best;
+    }
+}
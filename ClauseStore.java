@@ -0,0 +1,173 @@
+import java.util.*;
+
+// Store a set of CNF clauses in compressed sparse row form, as a handful of flat integer arrays
+// instead of one small array object per clause and one list object per literal. The literals of
+// all clauses are stored consecutively in one array, and the clauses that each literal appears
+// in are stored consecutively in another, so that a solver walking through the clauses or the
+// occurrences of a literal reads memory sequentially. Empty and null clauses are left out.
+
+public class ClauseStore {
+
+    // The number of variables.
+    private final int n;
+    // The number of clauses stored.
+    private final int m;
+    // The literals of clause c are in positions start[c], ..., start[c + 1] - 1 of literals.
+    private final int[] literals;
+    private final int[] start;
+    // The clauses that contain the literal of index idx are in positions occStart[idx], ...,
+    // occStart[idx + 1] - 1 of occ, in increasing order.
+    private final int[] occStart;
+    private final int[] occ;
+
+    // Calculate the index of the literal, in the same way as in SATSolver.
+    private static int getIdx(int literal) {
+        if(literal < 0) { return 2 * (-literal) - 1; }
+        else { return 2 * literal - 2; }
+    }
+
+    /**
+     * Create a clause store for the set of CNF clauses for variables 1, ..., {@code n}.
+     * @param n The number of propositional variables in the system.
+     * @param clauses The array of clauses, in the same format as for {@code SATSolver.solveDPLL}.
+     */
+    public ClauseStore(int n, int[][] clauses) {
+        this.n = n;
+        int count = 0, total = 0;
+        for(int[] clause: clauses) {
+            if(clause != null && clause.length > 0) { count++; total += clause.length; }
+        }
+        this.m = count;
+        this.literals = new int[total];
+        this.start = new int[count + 1];
+        int c = 0, pos = 0;
+        for(int i = 0; i < clauses.length; i++) {
+            if(clauses[i] == null || clauses[i].length == 0) { continue; }
+            for(int literal: clauses[i]) {
+                checkLiteral(literal, i);
+                literals[pos++] = literal;
+            }
+            start[++c] = pos;
+        }
+        this.occStart = new int[2 * n + 1];
+        this.occ = new int[total];
+        buildOccurrences();
+    }
+
+    /**
+     * Create a clause store for the clauses given in compressed form, as produced by
+     * {@code DimacsParser}. The arrays are copied, so that they can be reused afterwards.
+     * @param n The number of propositional variables in the system.
+     * @param literals The literals of all clauses stored consecutively.
+     * @param offsets The position where each clause starts in the array of literals, followed
+     * by the position where the last clause ends.
+     * @param count The number of clauses.
+     */
+    public ClauseStore(int n, int[] literals, int[] offsets, int count) {
+        this.n = n;
+        int total = 0;
+        for(int c = 0; c < count; c++) {
+            if(offsets[c + 1] > offsets[c]) { total += offsets[c + 1] - offsets[c]; }
+        }
+        this.literals = new int[total];
+        int c = 0, pos = 0;
+        int[] start = new int[count + 1];
+        for(int i = 0; i < count; i++) {
+            if(offsets[i + 1] <= offsets[i]) { continue; }
+            for(int j = offsets[i]; j < offsets[i + 1]; j++) {
+                checkLiteral(literals[j], i);
+                this.literals[pos++] = literals[j];
+            }
+            start[++c] = pos;
+        }
+        this.m = c;
+        this.start = c == count ? start : Arrays.copyOf(start, c + 1);
+        this.occStart = new int[2 * n + 1];
+        this.occ = new int[total];
+        buildOccurrences();
+    }
+
+    // Make sure that the literal is a legal literal for the n variables.
+    private void checkLiteral(int literal, int c) {
+        if(literal == 0 || literal < -n || literal > n) {
+            throw new IllegalArgumentException("Illegal literal value " + literal + " in clause " + c);
+        }
+    }
+
+    // Fill in the occurrence lists with a counting sort of the clauses by their literals.
+    private void buildOccurrences() {
+        for(int literal: literals) { occStart[getIdx(literal) + 1]++; }
+        for(int idx = 0; idx < 2 * n; idx++) { occStart[idx + 1] += occStart[idx]; }
+        int[] fill = new int[2 * n];
+        System.arraycopy(occStart, 0, fill, 0, 2 * n);
+        for(int c = 0; c < m; c++) {
+            for(int i = start[c]; i < start[c + 1]; i++) {
+                occ[fill[getIdx(literals[i])]++] = c;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of variables.
+     * @return The number of variables.
+     */
+    public int getVariableCount() { return n; }
+
+    /**
+     * Returns the number of clauses stored, not counting the empty clauses that were left out.
+     * @return The number of clauses.
+     */
+    public int size() { return m; }
+
+    /**
+     * Returns the number of literals in the given clause.
+     * @param c The index of the clause.
+     * @return The number of literals in that clause.
+     */
+    public int length(int c) { return start[c + 1] - start[c]; }
+
+    /**
+     * Returns the given literal of the given clause.
+     * @param c The index of the clause.
+     * @param i The position of the literal inside the clause.
+     * @return The literal.
+     */
+    public int get(int c, int i) { return literals[start[c] + i]; }
+
+    /**
+     * Returns the literals of all clauses stored consecutively. The array is not copied and it
+     * must not be modified, since the occurrence lists depend on it.
+     * @return The array of literals.
+     */
+    public int[] getLiterals() { return literals; }
+
+    /**
+     * Returns the position where each clause starts in the array of literals, followed by the
+     * total number of literals. The array is not copied and it must not be modified.
+     * @return The array of clause starting positions.
+     */
+    public int[] getStarts() { return start; }
+
+    /**
+     * Returns the position where the occurrence list of each literal index starts in the array
+     * of occurrences, followed by the total number of occurrences. The array is not copied and
+     * it must not be modified.
+     * @return The array of occurrence list starting positions.
+     */
+    public int[] getOccurrenceStarts() { return occStart; }
+
+    /**
+     * Returns the occurrence lists of all literal indices stored consecutively. The array is
+     * not copied and it must not be modified.
+     * @return The array of occurrences.
+     */
+    public int[] getOccurrences() { return occ; }
+
+    /**
+     * Returns the approximate number of bytes of memory used by this clause store.
+     * @return The number of bytes used by the arrays of this store.
+     */
+    public long getMemoryUsage() {
+        return 4L * ((long)literals.length + start.length + occStart.length + occ.length);
+    }
+}
@@ -0,0 +1,215 @@
+import java.lang.management.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+// Measure the generic ColouringSolver against the IntColouringSolver engine on graphs of the
+// families in the DIMACS colouring benchmarks, the queen graphs and the Mycielski graphs, and on
+// random graphs, each coloured with its chromatic number or a number of colours near it. Both
+// searches are given the same neighbour lists and report their running times, calls and the
+// memory that they allocate. The engine is measured with each of its propagations, with the rows,
+// columns and diagonals of the queen graphs as the all-different constraints. Last, the parallel
+// search of ParallelColouringSolver is measured with growing numbers of worker threads on a graph
+// with no colouring, whose whole search tree must be searched. Finally, ChromaticNumberSolver finds
+// the chromatic numbers of the graphs, with and without starting each search from the colouring
+// found before.
+
+public class ColouringBenchmark {
+
+    // The queen graph of the n * n chessboard, where two squares are neighbours if a queen on
+    // one could move to the other, given as consecutive pairs of the end vertices of its edges.
+    private static int[] queenGraph(int n) {
+        List<Integer> edges = new ArrayList<Integer>();
+        for(int i = 0; i < n * n; i++) {
+            for(int j = i + 1; j < n * n; j++) {
+                int dx = Math.abs(i % n - j % n), dy = Math.abs(i / n - j / n);
+                if(dx == 0 || dy == 0 || dx == dy) { edges.add(i); edges.add(j); }
+            }
+        }
+        return toArray(edges);
+    }
+
+    // The rows, columns and diagonals of the n * n chessboard, which are cliques of its queen graph.
+    private static int[][] queenCliques(int n) {
+        List<int[]> cliques = new ArrayList<int[]>();
+        for(int i = 0; i < n; i++) {
+            int[] row = new int[n], column = new int[n];
+            for(int j = 0; j < n; j++) { row[j] = n * i + j; column[j] = n * j + i; }
+            cliques.add(row);
+            cliques.add(column);
+        }
+        // The diagonals of at least two squares in both directions.
+        for(int d = -(n - 2); d <= n - 2; d++) {
+            List<Integer> down = new ArrayList<Integer>(), up = new ArrayList<Integer>();
+            for(int y = 0; y < n; y++) {
+                if(y + d >= 0 && y + d < n) { down.add(n * y + y + d); }
+                if(n - 1 - y + d >= 0 && n - 1 - y + d < n) { up.add(n * y + n - 1 - y + d); }
+            }
+            cliques.add(toArray(down));
+            cliques.add(toArray(up));
+        }
+        return cliques.toArray(new int[0][]);
+    }
+
+    // The Mycielski graph of the given order, whose chromatic number is the order plus one
+    // although it contains no triangles. Order 2 is the graph of one edge.
+    private static int[] mycielskiGraph(int order) {
+        List<Integer> edges = new ArrayList<Integer>(Arrays.asList(0, 1));
+        int n = 2;
+        for(int o = 3; o <= order + 1; o++) {
+            // Each vertex v gets a twin n + v with the same neighbours, and all the twins are
+            // neighbours of the one new vertex 2n.
+            int m = edges.size();
+            for(int i = 0; i < m; i += 2) {
+                int u = edges.get(i), v = edges.get(i + 1);
+                edges.add(u); edges.add(n + v);
+                edges.add(v); edges.add(n + u);
+            }
+            for(int v = 0; v < n; v++) { edges.add(n + v); edges.add(2 * n); }
+            n = 2 * n + 1;
+        }
+        return toArray(edges);
+    }
+
+    // The random graph of n vertices where each pair of vertices is an edge with probability p.
+    private static int[] randomGraph(int n, double p, Random rng) {
+        List<Integer> edges = new ArrayList<Integer>();
+        for(int i = 0; i < n; i++) {
+            for(int j = i + 1; j < n; j++) {
+                if(rng.nextDouble() < p) { edges.add(i); edges.add(j); }
+            }
+        }
+        return toArray(edges);
+    }
+
+    // The integers of the list as an array.
+    private static int[] toArray(List<Integer> list) {
+        int[] result = new int[list.size()];
+        for(int i = 0; i < result.length; i++) { result[i] = list.get(i); }
+        return result;
+    }
+
+    // The number of vertices in the graph of the given edges.
+    private static int vertexCount(int[] edges) {
+        int n = 0;
+        for(int v: edges) { n = Math.max(n, v + 1); }
+        return n;
+    }
+
+    // The number of bytes allocated by the current thread so far.
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean())
+        .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    // Colour the graph with both solvers, the engine with each of its propagations, and report
+    // the results.
+    private static void measure(String name, int[] edges, int colours, int[][] cliques) {
+        int n = vertexCount(edges);
+        List<List<Integer>> neighbours = new ArrayList<List<Integer>>();
+        for(int v = 0; v < n; v++) { neighbours.add(new ArrayList<Integer>()); }
+        for(int i = 0; i < edges.length; i += 2) {
+            neighbours.get(edges[i]).add(edges[i + 1]);
+            neighbours.get(edges[i + 1]).add(edges[i]);
+        }
+        List<Integer> colourList = new ArrayList<Integer>();
+        for(int c = 0; c < colours; c++) { colourList.add(c); }
+
+        long startBytes = allocatedBytes();
+        long startTime = System.nanoTime();
+        List<Integer> generic = ColouringSolver.solve(n, v -> neighbours.get(v), v -> colourList);
+        long genericTime = System.nanoTime() - startTime;
+        long genericBytes = allocatedBytes() - startBytes;
+        report(name, colours, "ColouringSolver", generic != null, genericTime,
+        ColouringSolver.getCallCount(), genericBytes);
+
+        for(IntColouringSolver.Propagation propagation: IntColouringSolver.Propagation.values()) {
+            if(propagation == IntColouringSolver.Propagation.ALL_DIFFERENT && cliques.length == 0) { continue; }
+            startBytes = allocatedBytes();
+            startTime = System.nanoTime();
+            IntColouringSolver solver = new IntColouringSolver(n, edges, colours);
+            for(int[] clique: cliques) { solver.addAllDifferent(clique); }
+            solver.setPropagation(propagation);
+            int[] solution = solver.solve();
+            long time = System.nanoTime() - startTime;
+            long bytes = allocatedBytes() - startBytes;
+            report(name, colours, "Int/" + propagation, solution != null, time, solver.getCallCount(), bytes);
+        }
+    }
+
+    private static void report(String name, int colours, String solver, boolean found, long time,
+    int calls, long bytes) {
+        System.out.printf("%-12s %3d colours %-23s %-9s %7d ms, %10d calls, %11d bytes allocated%n",
+        name, colours, solver, found ? "coloured" : "none", time / 1000000, calls, bytes);
+    }
+
+    // Colour the graph with the parallel search in pools of 1, 2, 4, ... worker threads up to
+    // the number of processors, and report the results.
+    private static void measureParallel(String name, int[] edges, int colours, int depth) {
+        int n = vertexCount(edges);
+        IntColouringSolver solver = new IntColouringSolver(n, edges, colours);
+        solver.setPropagation(IntColouringSolver.Propagation.ARC_CONSISTENCY);
+        long startTime = System.nanoTime();
+        int[] solution = solver.solve();
+        long sequentialTime = System.nanoTime() - startTime;
+        System.out.printf("%-12s %3d colours %-23s %-9s %7d ms, %10d calls%n", name, colours,
+        "Int/sequential", solution != null ? "coloured" : "none", sequentialTime / 1000000, solver.getCallCount());
+        int processors = Runtime.getRuntime().availableProcessors();
+        for(int threads = 1; ; threads = Math.min(2 * threads, processors)) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            ParallelColouringSolver parallel = new ParallelColouringSolver(solver, depth);
+            startTime = System.nanoTime();
+            solution = parallel.solve(pool);
+            long time = System.nanoTime() - startTime;
+            pool.shutdown();
+            System.out.printf("%-12s %3d colours %-23s %-9s %7d ms, %10d calls, %6d tasks, %5.2f times as fast%n",
+            name, colours, "Parallel/" + threads, solution != null ? "coloured" : "none", time / 1000000,
+            parallel.getCallCount(), parallel.getTaskCount(), (double)sequentialTime / time);
+            if(threads == processors) { break; }
+        }
+    }
+
+    // Find the chromatic number of the graph with and without the warm start, and report the results.
+    private static void measureChromatic(String name, int[] edges) {
+        for(boolean warmStart: new boolean[] { false, true }) {
+            IntColouringSolver graph = new IntColouringSolver(vertexCount(edges), edges, 1);
+            graph.setPropagation(IntColouringSolver.Propagation.ARC_CONSISTENCY);
+            ChromaticNumberSolver solver = new ChromaticNumberSolver(graph);
+            solver.setWarmStart(warmStart);
+            StringBuilder bounds = new StringBuilder();
+            solver.setBoundListener((lower, upper) -> bounds.append(" " + lower + ".." + upper));
+            long startTime = System.nanoTime();
+            solver.solve();
+            long time = System.nanoTime() - startTime;
+            System.out.printf("%-12s chromatic %3d %-13s %7d ms, %10d calls, %2d searches, bounds%s%n", name,
+            solver.getUpperBound(), warmStart ? "warm start" : "cold start", time / 1000000, solver.getCallCount(),
+            solver.getSearchCount(), bounds);
+        }
+    }
+
+    public static void main(String[] args) {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : 12345;
+        // Run once to warm up the JIT compiler before measuring.
+        for(int i = 0; i < 2; i++) {
+            measure("queen5_5", queenGraph(5), 5, queenCliques(5));
+            measure("queen6_6", queenGraph(6), 7, queenCliques(6));
+            measure("queen7_7", queenGraph(7), 7, queenCliques(7));
+            measure("myciel3", mycielskiGraph(3), 4, new int[0][]);
+            measure("myciel4", mycielskiGraph(4), 5, new int[0][]);
+            measure("myciel4", mycielskiGraph(4), 4, new int[0][]);
+            Random rng = new Random(seed);
+            measure("random70", randomGraph(70, 0.2, rng), 6, new int[0][]);
+            measure("random60", randomGraph(60, 0.3, rng), 8, new int[0][]);
+        }
+        for(int i = 0; i < 2; i++) {
+            measureParallel("queen7_7", queenGraph(7), 6, 3);
+        }
+        for(int i = 0; i < 2; i++) {
+            measureChromatic("queen6_6", queenGraph(6));
+            measureChromatic("queen7_7", queenGraph(7));
+            measureChromatic("myciel4", mycielskiGraph(4));
+            Random rng = new Random(seed);
+            measureChromatic("random70", randomGraph(70, 0.2, rng));
+            measureChromatic("random60", randomGraph(60, 0.3, rng));
+        }
+    }
+}
@@ -2,7 +2,8 @@ import java.util.*;
 import java.util.function.*;
 import java.io.*;
 
-// Solves the graph colouring problem with backtracking.
+// Solves the graph colouring problem with backtracking. For colours that are small integers,
+// IntColouringSolver does the same search without boxing and allocation.
 
 public class ColouringSolver {
 
@@ -17,18 +18,15 @@ public class ColouringSolver {
      */
     public static int getFcCount() { return fcCount; }
     
-    // A comparator used to sort variable indices in order of increasing domain size.
-    private static class DomainSizeComparator<E> implements Comparator<Integer> {
-        // The list of domains of each variable.
-        private List<Set<E>> remainingDomain;
-        public DomainSizeComparator(List<Set<E>> remainingDomain) {
-            this.remainingDomain = remainingDomain;
-        }
-        public int compare(Integer i1, Integer i2) {
-            int c1 = remainingDomain.get(i1).size();
-            int c2 = remainingDomain.get(i2).size();
-            return c1 < c2 ? -1 : (c1 > c2 ? +1 : 0); 
-        }
+    /*
+     * The priority of a variable in the queue of the variables to assign, smaller first. The
+     * variable with the fewest values left comes first, and of those with equally many, the one
+     * with the most unassigned neighbours, as in the DSATUR heuristic of Brelaz. For colouring,
+     * the values removed from a domain are exactly the distinct colours of the neighbours, so
+     * the smallest domain is also the highest saturation degree.
+     */
+    static long priority(int domainSize, int freeDegree) {
+        return ((long)domainSize << 32) + (Integer.MAX_VALUE - freeDegree);
     }
     
     /**
@@ -51,20 +49,26 @@ public class ColouringSolver {
             neighbourL.add(neighbours.apply(i));
         }
         ArrayList<E> solution = new ArrayList<E>(n);
-        PriorityQueue<Integer> queue = new PriorityQueue<Integer>(new DomainSizeComparator(remainingDomain));
+        // Every variable starts with all its neighbours unassigned.
+        int[] freeDegree = new int[n];
+        for(int i = 0; i < n; i++) {
+            for(int j: neighbourL.get(i)) { freeDegree[j]++; }
+        }
+        IndexedHeap queue = new IndexedHeap(n);
         for(int i = 0; i < n; i++) { 
             solution.add(null);
-            queue.offer(i);
+            queue.offer(i, priority(remainingDomain.get(i).size(), freeDegree[i]));
         }
         callCount = 0; fcCount = 0;
-        return solve(0, new boolean[n], queue, neighbourL, remainingDomain, removed, solution);
+        return solve(0, new boolean[n], queue, freeDegree, neighbourL, remainingDomain, removed, solution);
     }
     
     // Solve the colouring problem with backtracking recursion with forward checking.
     private static <E> List<E> solve(
         int level,                      // The current level of recursion.
         boolean[] assigned,             // Which variables have already been assigned in the recursion.
-        PriorityQueue<Integer> queue,   // Queue of variable indices remaining to be assigned.
+        IndexedHeap queue,              // Queue of variable indices remaining to be assigned.
+        int[] freeDegree,               // How many unassigned variables have each variable as their neighbour.
         List<List<Integer>> neighbourL, // List of neighbours of each variable.
         List<Set<E>> remainingDomain,   // List of remaining values of each variable.
         List<Map<E, Integer>> removed,  // List of maps telling which level each value was removed for each variable.
@@ -72,10 +76,17 @@ public class ColouringSolver {
     ) {
         callCount++;
         // When no more unassigned variables remain, solution is completed successfully.
-        if(queue.size() == 0) { return solution; }
+        if(queue.getSize() == 0) { return solution; }
         // Choose the next variable k to assign its value.
         int k = queue.poll();
         assigned[k] = true;
+        // The neighbours of k have one unassigned neighbour less.
+        for(int i: neighbourL.get(k)) {
+            if(!assigned[i]) {
+                freeDegree[i]--;
+                queue.update(i, priority(remainingDomain.get(i).size(), freeDegree[i]));
+            }
+        }
         // Loop through the possible remaining values for variable k.
         for(E elem: new ArrayList<E>(remainingDomain.get(k))) {
             // Try that value for variable k.
@@ -96,10 +107,11 @@ public class ColouringSolver {
                     // Mark the value elem as having been removed at this level.
                     remaining.remove(elem);
                     removed.get(i).put(elem, level);
+                    queue.update(i, priority(remaining.size(), freeDegree[i]));
                 }
             }
             // Try to assign the rest of the variables recursively.
-            if(upto == -1 && solve(level + 1, assigned, queue, neighbourL, remainingDomain, removed, solution) != null) {
+            if(upto == -1 && solve(level + 1, assigned, queue, freeDegree, neighbourL, remainingDomain, removed, solution) != null) {
                 return solution;
             }
             // Undo the element removals from domains of neighbour variables.
@@ -110,57 +122,123 @@ public class ColouringSolver {
                 if(rmap.getOrDefault(elem, -1) == level) {
                     rmap.remove(elem);
                     remainingDomain.get(i).add(elem);
+                    queue.update(i, priority(remainingDomain.get(i).size(), freeDegree[i]));
                 }
             }
         }
         // Variable k becomes unassigned again.
-        queue.offer(k);
         assigned[k] = false;
+        for(int i: neighbourL.get(k)) {
+            if(!assigned[i]) {
+                freeDegree[i]++;
+                queue.update(i, priority(remainingDomain.get(i).size(), freeDegree[i]));
+            }
+        }
+        queue.offer(k, priority(remainingDomain.get(k).size(), freeDegree[k]));
         return null;
     }
     
+    /**
+     * Read a graph colouring problem from a DIMACS file and solve it with the given number of
+     * colours, using the {@code IntColouringSolver} engine for integer colours with arc consistency.
+     * @param filename The name of the file.
+     * @param colors The number of colours.
+     * @throws IOException If the file cannot be read.
+     */
     public static void readDimacsProblem(String filename, int colors) throws IOException {
-        List<List<Integer>> neighbours = new ArrayList<List<Integer>>();
-        int vars = 0;
-        List<Integer> colorDom = new ArrayList<Integer>();
-        for(int c = 0; c < colors; c++) { 
-            colorDom.add(c + 1);
+        readDimacsProblem(filename, colors, 0);
+    }
+
+    /**
+     * Read a graph colouring problem from a DIMACS file and solve it with the given number of
+     * colours, splitting the given number of the first decision levels into parallel tasks in the
+     * common ForkJoinPool.
+     * @param filename The name of the file.
+     * @param colors The number of colours.
+     * @param depth The number of decision levels to split, or 0 to search in this thread alone.
+     * @throws IOException If the file cannot be read.
+     */
+    public static void readDimacsProblem(String filename, int colors, int depth) throws IOException {
+        IntColouringSolver solver = readDimacsGraph(filename, colors);
+        int[] solution;
+        if(depth > 0) {
+            ParallelColouringSolver parallel = new ParallelColouringSolver(solver, depth);
+            solution = parallel.solve();
+            System.out.print(parallel.report());
+        }
+        else {
+            long startTime = System.currentTimeMillis();
+            solution = solver.solve();
+            long endTime = System.currentTimeMillis();
+            System.out.println("Solved in " + (endTime - startTime) + " ms with " + solver.getCallCount()
+            + " recursive calls, " + solver.getFcCount() + " forward check cutoffs and "
+            + solver.getAcCount() + " arc consistency cutoffs.");
         }
+        if(solution != null) {
+            for(int i = 0; i < solution.length; i++) {
+                System.out.print(i + "->" + (solution[i] + 1) + " ");
+                if(i % 10 == 9) { System.out.println(""); }
+            }
+        }
+        else {
+            System.out.println("No solution found.");
+        }
+    }
+
+    /**
+     * Read a graph colouring problem from a DIMACS file and find its chromatic number, printing
+     * each improvement of its lower and upper bounds as it is found.
+     * @param filename The name of the file.
+     * @throws IOException If the file cannot be read.
+     */
+    public static void readDimacsChromaticNumber(String filename) throws IOException {
+        IntColouringSolver graph = readDimacsGraph(filename, 1);
+        ChromaticNumberSolver solver = new ChromaticNumberSolver(graph);
+        long startTime = System.currentTimeMillis();
+        solver.setBoundListener((lower, upper) -> System.out.println("Chromatic number is between "
+        + lower + " and " + upper + " after " + (System.currentTimeMillis() - startTime) + " ms."));
+        int[] solution = solver.solve();
+        long endTime = System.currentTimeMillis();
+        if(solution == null) {
+            System.out.println("No solution found.");
+            return;
+        }
+        System.out.println("Chromatic number " + solver.getUpperBound() + " found in " + (endTime - startTime)
+        + " ms with " + solver.getSearchCount() + " searches and " + solver.getCallCount()
+        + " recursive calls, clique of " + solver.getClique().length + " vertices.");
+        for(int i = 0; i < solution.length; i++) {
+            System.out.print(i + "->" + (solution[i] + 1) + " ");
+            if(i % 10 == 9) { System.out.println(""); }
+        }
+    }
+
+    // Read the graph of a DIMACS colouring problem into a solver that colours it with the given
+    // number of colours, with arc consistency.
+    private static IntColouringSolver readDimacsGraph(String filename, int colors) throws IOException {
+        int vars = 0;
+        // The edges as consecutive pairs of their end vertices, counting from zero.
+        int[] edges = new int[1024];
+        int edgeCount = 0;
         Scanner s = new Scanner(new File(filename));
         while(s.hasNextLine()) {
-            String line = s.nextLine();
-            if(line.charAt(0) == 'c') { continue; }
+            String line = s.nextLine().trim();
+            if(line.length() == 0 || line.charAt(0) == 'c') { continue; }
             else if(line.charAt(0) == 'p') {
                 String[] info = line.split("\\s+");
                 vars = Integer.parseInt(info[2]);
-                for(int i = 0; i < vars; i++) {
-                    neighbours.add(new LinkedList<Integer>());
-                }
             }
             else if(line.charAt(0) == 'e') {
                 String[] info = line.split("\\s+");
-                int src = Integer.parseInt(info[1]) - 1;
-                int tgt = Integer.parseInt(info[2]) - 1;
-                neighbours.get(src).add(tgt);
+                if(2 * edgeCount + 2 > edges.length) { edges = Arrays.copyOf(edges, 2 * edges.length); }
+                edges[2 * edgeCount] = Integer.parseInt(info[1]) - 1;
+                edges[2 * edgeCount + 1] = Integer.parseInt(info[2]) - 1;
+                edgeCount++;
             }
         }
-        System.out.println("Read graph colouring problem with " + vars + " nodes."); 
-        long startTime = System.currentTimeMillis();
-        List<Integer> solution = solve(vars,
-            n -> neighbours.get(n),
-            n -> colorDom
-        );
-        long endTime = System.currentTimeMillis();
-        System.out.println("Solved in " + (endTime - startTime) + " ms with " + getCallCount() 
-        + " recursive calls and " + getFcCount() + " forward check cutoffs.");
-        if(solution != null) {
-            for(int i = 0; i < solution.size(); i++) {
-                System.out.print(i + "->" + solution.get(i) + " ");
-                if(i % 10 == 9) { System.out.println(""); }
-            }
-        }
-        else {
-            System.out.println("No solution found.");
-        }
+        IntColouringSolver solver = new IntColouringSolver(vars, Arrays.copyOf(edges, 2 * edgeCount), colors);
+        solver.setPropagation(IntColouringSolver.Propagation.ARC_CONSISTENCY);
+        System.out.println("Read graph colouring problem with " + vars + " nodes and "
+        + solver.getEdgeCount() + " edges.");
+        return solver;
     }
 }
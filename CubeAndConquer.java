@@ -0,0 +1,192 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+// Solve a SAT problem by first splitting its search space into cubes with lookahead on the first
+// few decision levels, and then solving the cubes as independent tasks in a ForkJoinPool whose
+// idle worker threads steal the remaining cubes from the busy ones. As soon as some cube turns out
+// to be satisfiable, the remaining cubes are skipped and the running searches are asked to stop.
+
+public class CubeAndConquer {
+
+    // The problem to solve.
+    private final int n;
+    private final int[][] clauses;
+    // How many decision levels are split into cubes.
+    private final int depth;
+    // The unit propagation used in the search of each cube.
+    private SATSolver.Propagation propagation = SATSolver.Propagation.COUNTING;
+    // Whether the cubes are solved with the CDCL solver instead of the DPLL solver.
+    private boolean learning = false;
+
+    // The cubes of the most recent call to solve, and the statistics of solving each cube.
+    private List<int[]> cubes = new ArrayList<int[]>();
+    private long[] cubeTime = new long[0];
+    private int[] cubeCalls = new int[0];
+    private boolean[] cubeSolved = new boolean[0];
+    private long cubingTime = 0;
+    // The solution found for some cube, or null if none has been found.
+    private final AtomicReference<boolean[]> found = new AtomicReference<boolean[]>();
+    // The solvers of the cubes currently being solved, so that they can be asked to stop.
+    private final Set<Object> running = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Create a cube and conquer solver for the set of CNF clauses for variables 1, ..., {@code n}.
+     * @param n The number of propositional variables in the system.
+     * @param clauses The array of clauses, in the same format as for {@code SATSolver.solveDPLL}.
+     * @param depth The number of decision levels to split into cubes.
+     */
+    public CubeAndConquer(int n, int[][] clauses, int depth) {
+        this.n = n;
+        this.clauses = clauses;
+        this.depth = depth;
+    }
+
+    /**
+     * Set the unit propagation used in the lookahead and in the DPLL search of each cube.
+     * @param propagation The unit propagation scheme, {@code COUNTING} by default.
+     */
+    public void setPropagation(SATSolver.Propagation propagation) { this.propagation = propagation; }
+
+    /**
+     * Set whether the cubes are solved with the CDCL solver instead of the DPLL solver.
+     * @param learning Whether to use CDCL for the cubes, false by default.
+     */
+    public void setLearning(boolean learning) { this.learning = learning; }
+
+    /**
+     * Solve the clauses in the common ForkJoinPool.
+     * @return Solution array of {@code n + 1} elements giving the truth value of each variable,
+     * or {@code null} if there is no solution to the clauses.
+     */
+    public boolean[] solve() {
+        return solve(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Solve the clauses by generating the cubes and solving them in the given ForkJoinPool.
+     * @param pool The pool whose worker threads solve the cubes.
+     * @return Solution array of {@code n + 1} elements giving the truth value of each variable,
+     * or {@code null} if there is no solution to the clauses.
+     */
+    public boolean[] solve(ForkJoinPool pool) {
+        long startTime = System.nanoTime();
+        cubes = new SATSolver(n, clauses, propagation).generateCubes(depth);
+        cubingTime = System.nanoTime() - startTime;
+        cubeTime = new long[cubes.size()];
+        cubeCalls = new int[cubes.size()];
+        cubeSolved = new boolean[cubes.size()];
+        found.set(null);
+        running.clear();
+        if(cubes.size() > 0) {
+            pool.invoke(new Conquer(0, cubes.size() - 1));
+        }
+        return found.get();
+    }
+
+    /**
+     * Returns the cubes generated in the most recent call to {@code solve}.
+     * @return The list of cubes, each cube given as the array of its decision literals.
+     */
+    public List<int[]> getCubes() { return cubes; }
+
+    /**
+     * Returns the time spent solving each cube in the most recent call to {@code solve}.
+     * @return The array of solving times in nanoseconds, zero for the cubes that were skipped.
+     */
+    public long[] getCubeTimes() { return cubeTime; }
+
+    /**
+     * Returns how many decisions the solver of each cube made in the most recent call to {@code solve}.
+     * @return The array of decision counts, zero for the cubes that were skipped.
+     */
+    public int[] getCubeCalls() { return cubeCalls; }
+
+    /**
+     * Returns the time spent in lookahead generating the cubes in the most recent call to {@code solve}.
+     * @return The cube generation time in nanoseconds.
+     */
+    public long getCubingTime() { return cubingTime; }
+
+    /**
+     * Summarize the cube generation and the solving time of each cube of the most recent call
+     * to {@code solve}, to help choose the split depth.
+     * @return A multiline report of the cubes.
+     */
+    public String report() {
+        StringBuilder result = new StringBuilder();
+        long total = 0, max = 0;
+        for(long t: cubeTime) { total += t; max = Math.max(max, t); }
+        result.append("Generated " + cubes.size() + " cubes at depth " + depth + " in "
+        + (cubingTime / 1000000) + " ms, total solving time " + (total / 1000000)
+        + " ms, longest cube " + (max / 1000000) + " ms.\n");
+        for(int i = 0; i < cubes.size(); i++) {
+            result.append("Cube " + i + " " + Arrays.toString(cubes.get(i)) + ": ");
+            if(cubeCalls[i] == 0) { result.append("skipped\n"); }
+            else {
+                result.append((cubeTime[i] / 1000000) + " ms, " + cubeCalls[i] + " calls"
+                + (cubeSolved[i] ? ", satisfiable\n" : "\n"));
+            }
+        }
+        return result.toString();
+    }
+
+    // Solve the cube of the given index, unless a solution has already been found.
+    private void solveCube(int i) {
+        if(found.get() != null) { return; }
+        long startTime = System.nanoTime();
+        // The literals of the cube are added to the problem as unit clauses.
+        int[] cube = cubes.get(i);
+        int[][] cubeClauses = Arrays.copyOf(clauses, clauses.length + cube.length);
+        for(int j = 0; j < cube.length; j++) {
+            cubeClauses[clauses.length + j] = new int[] { cube[j] };
+        }
+        boolean[] solution;
+        if(learning) {
+            CDCLSolver solver = new CDCLSolver(n, cubeClauses);
+            running.add(solver);
+            if(found.get() != null) { solver.cancel(); }
+            solution = solver.solve();
+            running.remove(solver);
+            cubeCalls[i] = solver.getDecisionCount() + 1;
+        }
+        else {
+            SATSolver solver = new SATSolver(n, cubeClauses, propagation);
+            running.add(solver);
+            if(found.get() != null) { solver.cancel(); }
+            solution = solver.solve();
+            running.remove(solver);
+            cubeCalls[i] = solver.getRecursiveCalls();
+        }
+        cubeTime[i] = System.nanoTime() - startTime;
+        if(solution != null && found.compareAndSet(null, solution)) {
+            cubeSolved[i] = true;
+            // Ask the searches of all the other cubes to stop.
+            for(Object other: running) {
+                if(other instanceof SATSolver) { ((SATSolver)other).cancel(); }
+                else { ((CDCLSolver)other).cancel(); }
+            }
+        }
+    }
+
+    // Solve the cubes in the range (low..high), splitting the range into parallel tasks.
+    private class Conquer extends RecursiveAction {
+        private final int low, high;
+
+        public Conquer(int low, int high) {
+            this.low = low; this.high = high;
+        }
+
+        // The important method of every ForkJoinTask.
+        public void compute() {
+            if(low == high) { solveCube(low); }
+            else {
+                int mid = (low + high) / 2;
+                Conquer left = new Conquer(low, mid);
+                left.fork(); // available for idle workers to steal
+                new Conquer(mid + 1, high).compute();
+                left.join();
+            }
+        }
+    }
+}
@@ -0,0 +1,178 @@
+import java.util.Arrays;
+import java.util.Random;
+
+// Implement a four-ary heap for the literals in SATSolver, as a faster replacement for IntHeap.
+// The priority of each literal is copied into the heap next to the literal itself, as the upper
+// half of one long whose lower half breaks the ties, so that comparing two entries is a single
+// comparison of two longs read from the same array, without looking up the clause counts. The
+// copy is refreshed whenever the solver tells the heap that the priority of the literal changed.
+// With four children per node, the heap is half as deep as a binary heap, and the children of
+// each node lie next to each other in memory. A heap of all the literals can also be built at
+// once in linear time, instead of offering the literals one at a time.
+
+public class DaryIntHeap implements LiteralQueue {
+
+    // The children of position i are in positions 4i + 1, ..., 4i + 4.
+    private static final int LOG_ARITY = 2;
+    private static final int ARITY = 1 << LOG_ARITY;
+
+    // The entries of this heap in positions 0, ..., size - 1, each with the priority of its
+    // literal in the upper 32 bits and the code of the literal in the lower 32 bits.
+    private long[] heap;
+    // The number of elements currently in the heap.
+    private int size;
+    // The position of the literal of each code in the heap, -1 if absent.
+    private int[] loc;
+    // The code of each literal index, and the literal index of each code, when the ties are
+    // broken randomly. Otherwise both are null, and the code of each literal is its index. Of
+    // two literals of equal priority, the one with the larger code comes out first.
+    private int[] codeOf;
+    private int[] idxOf;
+    // The array from which the literal priorities are taken.
+    private int[] clauseCount;
+    // Whether the priority is highest-first or lowest-first.
+    private boolean highestFirst;
+
+    // The array index that represents the literal x for -n <= x <= n.
+    private static int getIdx(int literal) {
+        if(literal < 0) { return 2 * (-literal) - 1; }
+        else { return 2 * literal - 2; }
+    }
+
+    // The literal x that is represented by the array index idx.
+    private static int getLiteral(int idx) {
+        return (idx & 1) == 0 ? idx / 2 + 1 : -(idx + 1) / 2;
+    }
+
+    // Constructor for the four-ary heap, which breaks the ties in favour of the literals of
+    // larger index.
+    public DaryIntHeap(int[] clauseCount, int n, boolean highestFirst) {
+        this(clauseCount, n, highestFirst, null);
+    }
+
+    // Constructor for the four-ary heap that breaks the ties between literals randomly, unless
+    // rng is null.
+    public DaryIntHeap(int[] clauseCount, int n, boolean highestFirst, Random rng) {
+        heap = new long[2 * n];
+        loc = new int[2 * n];
+        Arrays.fill(loc, -1);
+        if(rng != null) {
+            // The codes are a random permutation of the literal indices.
+            codeOf = new int[2 * n];
+            idxOf = new int[2 * n];
+            for(int i = 0; i < 2 * n; i++) { idxOf[i] = i; }
+            for(int i = 2 * n - 1; i > 0; i--) {
+                int j = rng.nextInt(i + 1);
+                int tmp = idxOf[i]; idxOf[i] = idxOf[j]; idxOf[j] = tmp;
+            }
+            for(int i = 0; i < 2 * n; i++) { codeOf[idxOf[i]] = i; }
+        }
+        size = 0;
+        this.clauseCount = clauseCount;
+        this.highestFirst = highestFirst;
+    }
+
+    // Constructor for the four-ary heap that already contains all the literals -n, ..., n,
+    // arranged into a heap in linear time. The ties are broken randomly unless rng is null.
+    public DaryIntHeap(int[] clauseCount, int n, Random rng) {
+        this(clauseCount, n, true, rng);
+        for(int idx = 0; idx < 2 * n; idx++) {
+            heap[idx] = key(idx);
+            loc[code(idx)] = idx;
+        }
+        size = 2 * n;
+        for(int pos = (size - 2) >> LOG_ARITY; pos >= 0; pos--) { siftdown(pos, heap[pos]); }
+    }
+
+    // The code of the literal of index idx.
+    private int code(int idx) {
+        return codeOf == null ? idx : codeOf[idx];
+    }
+
+    // The entry of the heap for the literal of index idx with its current priority.
+    private long key(int idx) {
+        long priority = highestFirst ? clauseCount[idx] : -clauseCount[idx];
+        return (priority << 32) | code(idx);
+    }
+
+    // Current size of the heap.
+    public int getSize() {
+        return size;
+    }
+
+    // Check whether the literal e is currently in this heap.
+    public boolean contains(int e) {
+        return loc[code(getIdx(e))] >= 0;
+    }
+
+    // Offer the literal e to this heap.
+    public void offer(int e) {
+        int idx = getIdx(e);
+        assert loc[code(idx)] < 0;
+        siftup(size++, key(idx));
+    }
+
+    // Extract the literal with the highest clause count.
+    public int poll() {
+        assert size > 0;
+        int code = (int)heap[0];
+        loc[code] = -1;
+        long last = heap[--size];
+        if(size > 0) { siftdown(0, last); }
+        return getLiteral(idxOf == null ? code : idxOf[code]);
+    }
+
+    // Decrease the priority of literal e and update the heap.
+    public void decrease(int e) {
+        update(getIdx(e));
+    }
+
+    // Increase the priority of literal e and update the heap.
+    public void increase(int e) {
+        update(getIdx(e));
+    }
+
+    // Refresh the priority of the literal of index idx and move it up or down as needed.
+    private void update(int idx) {
+        int pos = loc[code(idx)];
+        if(pos < 0) { return; }
+        long k = key(idx);
+        if(k > heap[pos]) { siftup(pos, k); } else { siftdown(pos, k); }
+    }
+
+    // Move the entry k up in the heap from position pos as needed.
+    private void siftup(int pos, long k) {
+        while(pos > 0) {
+            int ppos = (pos - 1) >> LOG_ARITY;
+            long pk = heap[ppos];
+            if(pk >= k) { break; }
+            heap[pos] = pk;
+            loc[(int)pk] = pos;
+            pos = ppos;
+        }
+        heap[pos] = k;
+        loc[(int)k] = pos;
+    }
+
+    // Move the entry k down in the heap from position pos as needed.
+    private void siftdown(int pos, long k) {
+        while(true) {
+            int first = (pos << LOG_ARITY) + 1;
+            if(first >= size) { break; }
+            int last = Math.min(first + ARITY, size);
+            // Each child is read only once while looking for the largest one.
+            int cpos = first;
+            long ck = heap[first];
+            for(int i = first + 1; i < last; i++) {
+                long h = heap[i];
+                if(h > ck) { ck = h; cpos = i; }
+            }
+            if(ck <= k) { break; }
+            heap[pos] = ck;
+            loc[(int)ck] = pos;
+            pos = cpos;
+        }
+        heap[pos] = k;
+        loc[(int)k] = pos;
+    }
+}
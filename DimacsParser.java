@@ -0,0 +1,196 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+
+// A streaming parser for SAT problems in the DIMACS CNF format. The file is memory-mapped and its
+// bytes are turned into literals directly, without creating any strings along the way. The literals
+// of all clauses are stored consecutively in one flat array, with the offsets of each clause in
+// another array. Clauses may span several lines and are terminated by 0, as the format says, and
+// the line containing only % that some benchmark files have after the last clause ends the input.
+
+public class DimacsParser {
+
+    // Files larger than this are mapped into memory in several consecutive pieces.
+    private static final int CHUNK = 1 << 30;
+
+    // The states of the parser between the bytes.
+    private static final int BETWEEN = 0, NUMBER = 1, COMMENT = 2, HEADER = 3, DONE = 4;
+
+    // The literals of all clauses, and the position where each clause starts in that array.
+    private int[] literals;
+    private int literalCount = 0;
+    private int[] offsets;
+    private int clauseCount = 0;
+    // The number of variables and clauses promised in the problem line, and the largest variable seen.
+    private int headerVars = 0, headerClauses = 0, maxVar = 0;
+    // The size of the file and the time spent parsing it.
+    private long bytes = 0, parseTime = 0;
+
+    // The parser is created only through the static parse method.
+    private DimacsParser() { }
+
+    /**
+     * Parse the DIMACS CNF problem in the given file.
+     * @param filename The name of the file.
+     * @return The parser object that contains the problem that was read.
+     * @throws IOException If the file cannot be read, or it is not in the DIMACS format.
+     */
+    public static DimacsParser parse(String filename) throws IOException {
+        DimacsParser parser = new DimacsParser();
+        long startTime = System.nanoTime();
+        try(FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            parser.bytes = channel.size();
+            parser.run(channel);
+        }
+        parser.parseTime = System.nanoTime() - startTime;
+        return parser;
+    }
+
+    /**
+     * Returns the number of variables in the problem.
+     * @return The larger of the number of variables promised in the problem line and
+     * the largest variable that appears in some clause.
+     */
+    public int getVariableCount() { return Math.max(headerVars, maxVar); }
+
+    /**
+     * Returns the number of clauses that were read.
+     * @return The number of clauses.
+     */
+    public int getClauseCount() { return clauseCount; }
+
+    /**
+     * Returns the literals of all clauses stored consecutively, so that the literals of clause
+     * {@code c} are in positions {@code getOffsets()[c]}, ..., {@code getOffsets()[c + 1] - 1}.
+     * The array may be longer than the total number of literals.
+     * @return The array of literals.
+     */
+    public int[] getLiterals() { return literals; }
+
+    /**
+     * Returns the position where each clause starts in the array of literals, followed by the
+     * total number of literals. The array may be longer than the number of clauses plus one.
+     * @return The array of clause offsets.
+     */
+    public int[] getOffsets() { return offsets; }
+
+    /**
+     * Returns the clauses as separate arrays, as expected by {@code SATSolver.solveDPLL}.
+     * @return The array of clauses.
+     */
+    public int[][] getClauses() {
+        int[][] clauses = new int[clauseCount][];
+        for(int c = 0; c < clauseCount; c++) {
+            clauses[c] = Arrays.copyOfRange(literals, offsets[c], offsets[c + 1]);
+        }
+        return clauses;
+    }
+
+    /**
+     * Returns the time spent parsing the file.
+     * @return The parsing time in milliseconds.
+     */
+    public long getParseTime() { return parseTime / 1000000; }
+
+    /**
+     * Returns the parsing throughput.
+     * @return The number of megabytes of the file parsed per second.
+     */
+    public double getThroughput() {
+        return parseTime == 0 ? 0 : (bytes / 1048576.0) / (parseTime / 1e9);
+    }
+
+    // Parse the entire file, piece by piece. The state is kept in local variables and it carries
+    // over from one piece to the next, so tokens and clauses may cross the piece boundaries.
+    private void run(FileChannel channel) throws IOException {
+        literals = new int[1024];
+        offsets = new int[256];
+        int state = BETWEEN;
+        boolean negative = false;
+        long value = 0;
+        boolean lineStart = true;
+        StringBuilder header = new StringBuilder();
+        for(long pos = 0; pos < bytes && state != DONE; pos += CHUNK) {
+            int len = (int)Math.min(CHUNK, bytes - pos);
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, pos, len);
+            for(int i = 0; i < len && state != DONE; i++) {
+                byte b = buf.get(i);
+                switch(state) {
+                    case COMMENT:
+                        if(b == '\n') { state = BETWEEN; lineStart = true; }
+                        continue;
+                    case HEADER:
+                        if(b == '\n') {
+                            parseHeader(header.toString());
+                            state = BETWEEN; lineStart = true;
+                        }
+                        else { header.append((char)b); }
+                        continue;
+                    case NUMBER:
+                        if(b >= '0' && b <= '9') {
+                            value = 10 * value + (b - '0');
+                            if(value > Integer.MAX_VALUE) {
+                                throw new IOException("Literal too large at byte " + (pos + i));
+                            }
+                            continue;
+                        }
+                        // The number has ended, so handle it before looking at this byte.
+                        addNumber(negative ? -(int)value : (int)value);
+                        state = BETWEEN;
+                        break;
+                    default:
+                        break;
+                }
+                // The state is BETWEEN at this point.
+                if(b == '\n') { lineStart = true; continue; }
+                if(b == ' ' || b == '\t' || b == '\r') { continue; }
+                if(b == '-' || (b >= '0' && b <= '9')) {
+                    negative = b == '-';
+                    value = negative ? 0 : b - '0';
+                    state = NUMBER;
+                }
+                else if(b == 'c') { state = COMMENT; }
+                else if(b == 'p') { state = HEADER; header.setLength(0); header.append('p'); }
+                else if(b == '%' && lineStart) { state = DONE; }
+                else { throw new IOException("Unexpected character '" + (char)b + "' at byte " + (pos + i)); }
+                lineStart = false;
+            }
+        }
+        if(state == NUMBER) { addNumber(negative ? -(int)value : (int)value); }
+        if(state == HEADER) { parseHeader(header.toString()); }
+        // A last clause without the terminating 0 still counts as a clause.
+        int start = clauseCount == 0 ? 0 : offsets[clauseCount];
+        if(literalCount > start) { endClause(); }
+        if(clauseCount == 0) { offsets[0] = 0; }
+    }
+
+    // Parse the problem line "p cnf vars clauses".
+    private void parseHeader(String line) throws IOException {
+        String[] info = line.trim().split("\\s+");
+        if(info.length < 4 || !info[1].equals("cnf")) {
+            throw new IOException("Malformed problem line: " + line);
+        }
+        headerVars = Integer.parseInt(info[2]);
+        headerClauses = Integer.parseInt(info[3]);
+        // Now that the size of the problem is known, make room for it all at once.
+        if(offsets.length < headerClauses + 1) { offsets = Arrays.copyOf(offsets, headerClauses + 1); }
+        if(literals.length < 3 * headerClauses) { literals = Arrays.copyOf(literals, 3 * headerClauses); }
+    }
+
+    // Handle one number in the clause section: a literal, or 0 that terminates the clause.
+    private void addNumber(int literal) {
+        if(literal == 0) { endClause(); return; }
+        if(literalCount == literals.length) { literals = Arrays.copyOf(literals, 2 * literalCount); }
+        literals[literalCount++] = literal;
+        if(Math.abs(literal) > maxVar) { maxVar = Math.abs(literal); }
+    }
+
+    // End the current clause, recording where the next clause will start.
+    private void endClause() {
+        if(clauseCount + 2 > offsets.length) { offsets = Arrays.copyOf(offsets, 2 * offsets.length); }
+        clauseCount++;
+        offsets[clauseCount] = literalCount;
+    }
+}
@@ -0,0 +1,142 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+
+// Write a proof of unsatisfiability in the binary DRAT format, as clause additions and deletions
+// that an independent proof checker such as drat-trim can verify against the original clauses.
+// Each step is the byte 'a' or 'd' followed by the literals of the clause, each literal mapped to
+// the unsigned number 2 * v for positive and 2 * v + 1 for negative literals of variable v, and
+// written in seven bit groups with the lowest group first, terminated by a zero byte. The steps
+// are gathered in a large buffer that is written to the file only when it fills up.
+
+public class DratWriter implements Closeable {
+
+    // The default size of the buffer.
+    private static final int BUFFER_SIZE = 1 << 22;
+
+    // The file that the proof is written to, and the buffer of the steps not yet written.
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    // Statistics of the proof written so far.
+    private long additions = 0, deletions = 0, bytes = 0;
+
+    /**
+     * Create a writer of a binary DRAT proof to the given file, replacing its previous contents.
+     * @param filename The name of the file.
+     * @throws IOException If the file cannot be opened for writing.
+     */
+    public DratWriter(String filename) throws IOException {
+        this(filename, BUFFER_SIZE);
+    }
+
+    /**
+     * Create a writer of a binary DRAT proof to the given file with a buffer of the given size.
+     * @param filename The name of the file.
+     * @param bufferSize The size of the buffer in bytes.
+     * @throws IOException If the file cannot be opened for writing.
+     */
+    public DratWriter(String filename, int bufferSize) throws IOException {
+        channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        buffer = ByteBuffer.allocateDirect(Math.max(bufferSize, 64));
+    }
+
+    /**
+     * Write the addition of the clause to the proof. The checker verifies the clause with respect
+     * to its first literal if the clause does not follow from the others by unit propagation alone.
+     * @param lits The array that contains the literals of the clause.
+     * @param from The position of the first literal of the clause in the array.
+     * @param to The position after the last literal of the clause in the array.
+     */
+    public void add(int[] lits, int from, int to) {
+        write('a', lits, from, to);
+        additions++;
+    }
+
+    /**
+     * Write the addition of the clause to the proof.
+     * @param clause The literals of the clause.
+     */
+    public void add(int... clause) {
+        add(clause, 0, clause.length);
+    }
+
+    /**
+     * Write the deletion of the clause from the proof.
+     * @param lits The array that contains the literals of the clause.
+     * @param from The position of the first literal of the clause in the array.
+     * @param to The position after the last literal of the clause in the array.
+     */
+    public void delete(int[] lits, int from, int to) {
+        write('d', lits, from, to);
+        deletions++;
+    }
+
+    /**
+     * Write the deletion of the clause from the proof.
+     * @param clause The literals of the clause.
+     */
+    public void delete(int... clause) {
+        delete(clause, 0, clause.length);
+    }
+
+    /**
+     * Returns the number of clause additions written so far.
+     * @return The number of additions.
+     */
+    public long getAdditions() { return additions; }
+
+    /**
+     * Returns the number of clause deletions written so far.
+     * @return The number of deletions.
+     */
+    public long getDeletions() { return deletions; }
+
+    /**
+     * Returns the size of the proof written so far, including the part still in the buffer.
+     * @return The number of bytes in the proof.
+     */
+    public long getBytes() { return bytes + buffer.position(); }
+
+    /**
+     * Write the contents of the buffer to the file.
+     * @throws UncheckedIOException If the file cannot be written.
+     */
+    public void flush() {
+        buffer.flip();
+        try {
+            while(buffer.hasRemaining()) { bytes += channel.write(buffer); }
+        }
+        catch(IOException e) { throw new UncheckedIOException(e); }
+        buffer.clear();
+    }
+
+    /**
+     * Write the contents of the buffer to the file and close the file.
+     * @throws IOException If the file cannot be written.
+     */
+    public void close() throws IOException {
+        try { flush(); }
+        catch(UncheckedIOException e) { throw e.getCause(); }
+        finally { channel.close(); }
+    }
+
+    // Write one step of the proof. A literal takes at most five bytes, so the buffer is flushed
+    // whenever there might not be room for the next literal and the terminating zero.
+    private void write(char op, int[] lits, int from, int to) {
+        if(buffer.remaining() < 7) { flush(); }
+        buffer.put((byte)op);
+        for(int i = from; i < to; i++) {
+            if(buffer.remaining() < 6) { flush(); }
+            int literal = lits[i];
+            long u = literal > 0 ? 2L * literal : -2L * literal + 1;
+            while(u > 127) {
+                buffer.put((byte)(0x80 | (u & 127)));
+                u >>>= 7;
+            }
+            buffer.put((byte)u);
+        }
+        buffer.put((byte)0);
+    }
+}
@@ -0,0 +1,94 @@
+import java.util.*;
+
+// Measure the binary IntHeap against the four-ary DaryIntHeap on the same sequence of operations
+// that the DPLL search makes with its queue of literals: the clause count of some literal goes
+// down or up and the heap is told about it, and now and then the literal of the highest count is
+// polled and later offered back. Each measurement is repeated a few times, so that the JIT
+// compiler has warmed up for the last ones.
+
+public class HeapBenchmark {
+
+    // The number of operations in each round of the measurement.
+    private static final int OPERATIONS = 20000000;
+
+    // A heap containing all the literals, built one literal at a time, or at once for DaryIntHeap.
+    private static LiteralQueue build(boolean dary, int[] clauseCount, int n, boolean bulk) {
+        if(dary && bulk) { return new DaryIntHeap(clauseCount, n, null); }
+        LiteralQueue heap = dary ? new DaryIntHeap(clauseCount, n, true) : new IntHeap(clauseCount, n, true);
+        for(int literal = 1; literal <= n; literal++) {
+            heap.offer(literal);
+            heap.offer(-literal);
+        }
+        return heap;
+    }
+
+    // Run the operations on the heap, returning a checksum of the counts of the polled literals.
+    private static long run(LiteralQueue heap, int[] clauseCount, int n, long seed) {
+        SplittableRandom rng = new SplittableRandom(seed);
+        int[] polled = new int[64];
+        int polledSize = 0;
+        long checksum = 0;
+        for(int i = 0; i < OPERATIONS; i++) {
+            int r = rng.nextInt(64);
+            if(r < 60) {
+                // The clause count of a random literal changes, as when clauses become satisfied
+                // and are later restored when backtracking.
+                int literal = rng.nextInt(n) + 1;
+                if(rng.nextBoolean()) { literal = -literal; }
+                int idx = literal < 0 ? 2 * (-literal) - 1 : 2 * literal - 2;
+                if(r < 30 && clauseCount[idx] > 0) {
+                    clauseCount[idx]--;
+                    heap.decrease(literal);
+                }
+                else {
+                    clauseCount[idx]++;
+                    heap.increase(literal);
+                }
+            }
+            else if(r < 62 && polledSize < polled.length) {
+                int literal = heap.poll();
+                int idx = literal < 0 ? 2 * (-literal) - 1 : 2 * literal - 2;
+                checksum = 31 * checksum + clauseCount[idx];
+                polled[polledSize++] = literal;
+            }
+            else if(polledSize > 0) {
+                heap.offer(polled[--polledSize]);
+            }
+        }
+        return checksum;
+    }
+
+    // Measure building the heap and running the operations with the given heap.
+    private static long measure(boolean dary, boolean bulk, int[] counts, int n, long seed) {
+        int[] clauseCount = counts.clone();
+        long startTime = System.nanoTime();
+        LiteralQueue heap = build(dary, clauseCount, n, bulk);
+        long buildTime = System.nanoTime() - startTime;
+        startTime = System.nanoTime();
+        long checksum = run(heap, clauseCount, n, seed);
+        long runTime = System.nanoTime() - startTime;
+        String name = dary ? (bulk ? "DaryIntHeap/heapify" : "DaryIntHeap/offer") : "IntHeap/offer";
+        System.out.printf("%-20s build %6d ms, %d operations %6d ms (%5.1f ns/operation)%n",
+        name, buildTime / 1000000, OPERATIONS, runTime / 1000000, (double)runTime / OPERATIONS);
+        return checksum;
+    }
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 500000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 12345;
+        // The clause counts of random 3-SAT near the threshold, about 6.4 occurrences per literal.
+        Random rng = new Random(seed);
+        int[] counts = new int[2 * n];
+        for(long i = 0; i < 3L * (long)(4.26 * n); i++) { counts[rng.nextInt(2 * n)]++; }
+        System.out.println("Heaps of " + 2 * n + " literals.");
+        for(int round = 0; round < rounds; round++) {
+            // The heaps break the ties differently, so their checksums need not agree, but
+            // printing them keeps the JIT compiler from leaving out the work.
+            long checksum = measure(false, false, counts, n, seed + round);
+            checksum ^= measure(true, false, counts, n, seed + round);
+            checksum ^= measure(true, true, counts, n, seed + round);
+            System.out.println("Checksum " + checksum);
+        }
+    }
+}
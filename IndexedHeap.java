@@ -0,0 +1,106 @@
+// Implement an indexed binary heap of the integers 0, ..., n - 1 that polls the element of the
+// smallest key first. The key of each element is stored in the heap next to the element, and
+// the position of each element is kept up to date, so that the key of any element in the heap
+// can be decreased or increased in logarithmic time. Used to order the variables of the
+// colouring searches by their remaining domains, which change at every forward checking step.
+
+public class IndexedHeap {
+
+    // The elements of this heap and their keys, in positions 1, ..., size.
+    private int[] data;
+    private long[] keys;
+    // The position of each element in the heap (0 if absent).
+    private int[] loc;
+    // The number of elements currently in the heap.
+    private int size;
+
+    // Constructor for the heap that can contain the integers 0, ..., n - 1.
+    public IndexedHeap(int n) {
+        data = new int[n + 1];
+        keys = new long[n + 1];
+        loc = new int[n];
+        size = 0;
+    }
+
+    // Current size of the heap.
+    public int getSize() {
+        return size;
+    }
+
+    // Check whether the element e is currently in this heap.
+    public boolean contains(int e) {
+        return loc[e] > 0;
+    }
+
+    // The key of the element e, which must be in this heap.
+    public long getKey(int e) {
+        assert loc[e] > 0;
+        return keys[loc[e]];
+    }
+
+    // Offer the element e with the given key to this heap.
+    public void offer(int e, long key) {
+        assert loc[e] == 0;
+        siftup(++size, e, key);
+    }
+
+    // The element with the smallest key, which stays in the heap.
+    public int peek() {
+        assert size > 0;
+        return data[1];
+    }
+
+    // Extract the element with the smallest key.
+    public int poll() {
+        assert size > 0;
+        int e = data[1];
+        loc[e] = 0;
+        int last = data[size];
+        long lastKey = keys[size--];
+        if(size > 0) { siftdown(1, last, lastKey); }
+        return e;
+    }
+
+    // Change the key of the element e, if it is in this heap, and move it up or down as needed.
+    public void update(int e, long key) {
+        int idx = loc[e];
+        if(idx == 0) { return; }
+        if(key < keys[idx]) { siftup(idx, e, key); }
+        else { siftdown(idx, e, key); }
+    }
+
+    // Move the element e of the given key up in the heap from position idx as needed.
+    private void siftup(int idx, int e, long key) {
+        while(idx > 1) {
+            int pidx = idx / 2;
+            if(keys[pidx] <= key) { break; }
+            data[idx] = data[pidx];
+            keys[idx] = keys[pidx];
+            loc[data[idx]] = idx;
+            idx = pidx;
+        }
+        data[idx] = e;
+        keys[idx] = key;
+        loc[e] = idx;
+    }
+
+    // Move the element e of the given key down in the heap from position idx as needed.
+    private void siftdown(int idx, int e, long key) {
+        while(2 * idx <= size) {
+            int cidx = 2 * idx;
+            long ckey = keys[cidx];
+            if(cidx + 1 <= size && keys[cidx + 1] < ckey) {
+                cidx++;
+                ckey = keys[cidx];
+            }
+            if(ckey >= key) { break; }
+            data[idx] = data[cidx];
+            keys[idx] = ckey;
+            loc[data[idx]] = idx;
+            idx = cidx;
+        }
+        data[idx] = e;
+        keys[idx] = key;
+        loc[e] = idx;
+    }
+}
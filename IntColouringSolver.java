@@ -0,0 +1,787 @@
+import java.util.*;
+
+// Solves the graph colouring problem with backtracking and forward checking, as ColouringSolver
+// does, but specialised to colours that are the integers 0, ..., k - 1. The domain of each vertex
+// is a bitmask of one long for every 64 colours, the graph is stored as the adjacency lists of
+// all vertices in one array, and the colours removed by forward checking are recorded on a trail
+// of ints, so that undoing them needs no maps. The vertices are chosen in the same DSATUR order,
+// kept in an indexed heap. The search is a loop over the decision levels instead of recursion,
+// and after the arrays are allocated at the start, it allocates nothing. Stronger propagation can
+// be chosen: arc consistency of the not-equal constraints of the edges, and the all-different
+// filtering of Regin for the groups of vertices given as all-different constraints, such as the
+// rows, columns and blocks of Sudoku. Their removals go to the same trail, so that backtracking
+// undoes them just as cheaply as those of forward checking.
+
+public class IntColouringSolver {
+
+    /**
+     * The ways to remove colours from the domains of the unassigned vertices after each assignment.
+     */
+    public enum Propagation {
+        /** Remove the colour of the assigned vertex from the domains of its neighbours. */
+        FORWARD_CHECKING,
+        /** Also make the not-equal constraints of the edges arc consistent with AC-3, so that the
+         * colour of every vertex with one colour left is removed from its neighbours, until no
+         * more colours can be removed. */
+        ARC_CONSISTENCY,
+        /** Also remove from the vertices of each all-different constraint the colours that are
+         * in no matching of its vertices to distinct colours, by the algorithm of Regin. */
+        ALL_DIFFERENT
+    }
+
+    // Counts for decisions and forward checking cutoffs that have occurred in the search.
+    private int callCount = 0, fcCount = 0;
+    // Counts for the cutoffs of arc consistency and of the all-different constraints, and for
+    // the colours that they have removed.
+    private int acCount = 0, allDifferentCount = 0;
+    private long acRemovals = 0, allDifferentRemovals = 0;
+    /** Accessor method for call count.
+     * @return The count of how many decisions the search has made, plus one, to equal the
+     * number of recursive calls that {@code ColouringSolver} would make.
+     */
+    public int getCallCount() { return callCount; }
+    /** Accessor method for forward checking cutoff count.
+     * @return How many forward checking cutoffs have taken place.
+     */
+    public int getFcCount() { return fcCount; }
+    /** Accessor method for arc consistency cutoff count.
+     * @return How many times arc consistency has left some vertex with no colours.
+     */
+    public int getAcCount() { return acCount; }
+    /** Accessor method for all-different cutoff count.
+     * @return How many times some all-different constraint has had no matching of its vertices
+     * to distinct colours.
+     */
+    public int getAllDifferentCount() { return allDifferentCount; }
+    /** Accessor method for the colours removed by arc consistency.
+     * @return How many colours arc consistency has removed, beyond forward checking.
+     */
+    public long getAcRemovals() { return acRemovals; }
+    /** Accessor method for the colours removed by the all-different constraints.
+     * @return How many colours the all-different filtering has removed.
+     */
+    public long getAllDifferentRemovals() { return allDifferentRemovals; }
+
+    // The value of the colour to try next that stands for the hinted colour of the vertex.
+    private static final int HINTED = -2;
+
+    // The number of vertices and colours, and the number of longs in the domain of each vertex.
+    private final int n, k, words;
+    // The neighbours of vertex v are in positions adjStart[v], ..., adjStart[v + 1] - 1 of adj.
+    private final int[] adjStart;
+    private final int[] adj;
+    // Whether some vertex is its own neighbour, which makes the graph impossible to colour.
+    private final boolean selfLoop;
+    // The initial domains given for the vertices, the domain of vertex v in the words positions
+    // starting from v * words, the bit of colour c in its long c / 64 as the bit c % 64.
+    private final long[] initialDomain;
+    // The vertices of each all-different constraint.
+    private final List<int[]> allDifferent = new ArrayList<int[]>();
+    // The propagation done after each assignment.
+    private Propagation propagation = Propagation.FORWARD_CHECKING;
+    // The colour to try first for each vertex, -1 for none, or null to try the colours in order.
+    private int[] hint = null;
+    // Whether the search has been asked to stop.
+    private volatile boolean cancelled = false;
+
+    // The state of the search.
+
+    // The remaining domain of each vertex, and its number of colours.
+    private long[] domain;
+    private int[] domainSize;
+    // The colour of each vertex, -1 for the unassigned ones.
+    private int[] colour;
+    // The vertices not yet assigned, ordered by their priority in ColouringSolver.
+    private IndexedHeap queue;
+    // The number of unassigned neighbours of each vertex.
+    private int[] freeDegree;
+    // The colours removed from the domains, as pairs of the vertex and the colour.
+    private int[] trail;
+    private int trailSize;
+    // The vertex assigned at each decision level, and the size of the trail before it.
+    private int[] levelVertex;
+    private int[] levelMark;
+
+    // The state of the propagation.
+
+    // Whether the propagation goes beyond forward checking.
+    private boolean propagating;
+    // The vertices whose domains have changed since they were last propagated, as a stack.
+    private int[] changed;
+    private int changedSize;
+    private boolean[] isChanged;
+    // The vertices of the all-different constraint a are in positions consStart[a], ...,
+    // consStart[a + 1] - 1 of consVertex, and the constraints of vertex v are in positions
+    // consOfStart[v], ..., consOfStart[v + 1] - 1 of consOf.
+    private int[] consStart, consVertex, consOfStart, consOf;
+    // The all-different constraints waiting to be filtered, as a stack.
+    private int[] pending;
+    private int pendingSize;
+    private boolean[] isPending;
+    // The matching of the vertices of the constraint being filtered to colours, by their
+    // positions in the constraint, and back from the colours, -1 for the unmatched ones.
+    private int[] matchedColour, vertexOfColour;
+    // The colours visited in the current search for an augmenting path, with the given stamp.
+    private int[] colourStamp;
+    private int stamp;
+    // The strongly connected components of the residual graph of the matching, whose nodes are
+    // the vertices of the constraint, then the colours, and last one node for the free colours.
+    private int[] index, low, component, edgePos, path, stack;
+    private boolean[] onStack;
+
+    /**
+     * Create a solver for colouring the graph of vertices 0, ..., {@code n} - 1 with the given
+     * edges in at most the given number of colours. Each edge may be given in either or both
+     * directions, and every vertex initially has all colours 0, ..., {@code colours} - 1 in
+     * its domain.
+     * @param n The number of vertices.
+     * @param edges The edges as consecutive pairs of their end vertices.
+     * @param colours The number of colours.
+     */
+    public IntColouringSolver(int n, int[] edges, int colours) {
+        if(edges.length % 2 != 0) {
+            throw new IllegalArgumentException("Edge array has odd length " + edges.length);
+        }
+        this.n = n;
+        this.k = colours;
+        this.words = Math.max(1, (colours + 63) / 64);
+        // Count the neighbours of each vertex in both directions, and fill in the lists.
+        int[] degree = new int[n + 1];
+        boolean loop = false;
+        for(int i = 0; i < edges.length; i += 2) {
+            int u = edges[i], v = edges[i + 1];
+            if(u < 0 || u >= n || v < 0 || v >= n) {
+                throw new IllegalArgumentException("Illegal edge " + u + "-" + v + " for " + n + " vertices");
+            }
+            if(u == v) { loop = true; continue; }
+            degree[u + 1]++;
+            degree[v + 1]++;
+        }
+        selfLoop = loop;
+        for(int v = 0; v < n; v++) { degree[v + 1] += degree[v]; }
+        int[] fill = Arrays.copyOf(degree, n);
+        int[] lists = new int[degree[n]];
+        for(int i = 0; i < edges.length; i += 2) {
+            int u = edges[i], v = edges[i + 1];
+            if(u == v) { continue; }
+            lists[fill[u]++] = v;
+            lists[fill[v]++] = u;
+        }
+        // Sort each list and leave out the edges given more than once.
+        adjStart = new int[n + 1];
+        int size = 0;
+        for(int v = 0; v < n; v++) {
+            Arrays.sort(lists, degree[v], degree[v + 1]);
+            adjStart[v] = size;
+            for(int i = degree[v]; i < degree[v + 1]; i++) {
+                if(i == degree[v] || lists[i] != lists[i - 1]) { lists[size++] = lists[i]; }
+            }
+        }
+        adjStart[n] = size;
+        adj = Arrays.copyOf(lists, size);
+        initialDomain = new long[n * words];
+        for(int v = 0; v < n; v++) { setDomain(v, null); }
+    }
+
+    // Create a solver for the same problem as the given solver, with its own state of the search,
+    // so that both can search at the same time.
+    IntColouringSolver(IntColouringSolver other) {
+        this.n = other.n;
+        this.k = other.k;
+        this.words = other.words;
+        this.adjStart = other.adjStart;
+        this.adj = other.adj;
+        this.selfLoop = other.selfLoop;
+        this.initialDomain = other.initialDomain.clone();
+        this.allDifferent.addAll(other.allDifferent);
+        this.propagation = other.propagation;
+        this.hint = other.hint;
+    }
+
+    // Create a solver for colouring the graph of the given solver with the given number of
+    // colours, all of them in the domain of every vertex, with the same propagation and
+    // all-different constraints, sharing the adjacency lists instead of building them again.
+    IntColouringSolver(IntColouringSolver other, int colours) {
+        this.n = other.n;
+        this.k = colours;
+        this.words = Math.max(1, (colours + 63) / 64);
+        this.adjStart = other.adjStart;
+        this.adj = other.adj;
+        this.selfLoop = other.selfLoop;
+        this.initialDomain = new long[n * words];
+        for(int v = 0; v < n; v++) { setDomain(v, null); }
+        this.allDifferent.addAll(other.allDifferent);
+        this.propagation = other.propagation;
+    }
+
+    /**
+     * Restrict the colours that the given vertex may have in the solutions.
+     * @param v The vertex.
+     * @param colours The colours allowed for the vertex, or {@code null} for all colours.
+     */
+    public void setDomain(int v, int[] colours) {
+        int from = v * words;
+        Arrays.fill(initialDomain, from, from + words, 0);
+        if(colours == null) {
+            for(int c = 0; c < k; c++) { initialDomain[from + (c >>> 6)] |= 1L << c; }
+        }
+        else {
+            for(int c: colours) {
+                if(c < 0 || c >= k) {
+                    throw new IllegalArgumentException("Illegal colour " + c + " for " + k + " colours");
+                }
+                initialDomain[from + (c >>> 6)] |= 1L << c;
+            }
+        }
+    }
+
+    /**
+     * Require the given vertices to have different colours, whether or not they are neighbours.
+     * The constraint only takes effect with the {@code ALL_DIFFERENT} propagation; otherwise the
+     * vertices should also be neighbours in the graph.
+     * @param vertices The vertices of the constraint.
+     */
+    public void addAllDifferent(int... vertices) {
+        int[] sorted = vertices.clone();
+        Arrays.sort(sorted);
+        for(int i = 0; i < sorted.length; i++) {
+            if(sorted[i] < 0 || sorted[i] >= n) {
+                throw new IllegalArgumentException("Illegal vertex " + sorted[i] + " for " + n + " vertices");
+            }
+            if(i > 0 && sorted[i] == sorted[i - 1]) {
+                throw new IllegalArgumentException("Vertex " + sorted[i] + " given twice");
+            }
+        }
+        allDifferent.add(vertices.clone());
+    }
+
+    /**
+     * Set the colour that the search tries first for each vertex, such as its colour in a
+     * colouring found earlier, before trying the other colours in increasing order.
+     * @param colours The colour of each vertex to try first, -1 for none, or {@code null} to
+     * try the colours in increasing order, which is the default.
+     */
+    public void setHint(int[] colours) {
+        if(colours != null && colours.length != n) {
+            throw new IllegalArgumentException("Hint has " + colours.length + " colours for " + n + " vertices");
+        }
+        hint = colours == null ? null : colours.clone();
+    }
+
+    /**
+     * Set the propagation done after each assignment. The default is forward checking.
+     * @param propagation The new propagation.
+     */
+    public void setPropagation(Propagation propagation) { this.propagation = propagation; }
+
+    /**
+     * Returns the propagation done after each assignment.
+     * @return The propagation.
+     */
+    public Propagation getPropagation() { return propagation; }
+
+    /**
+     * Returns the number of vertices of the graph.
+     * @return The number of vertices.
+     */
+    public int getVertexCount() { return n; }
+
+    /**
+     * Returns the number of edges of the graph, each edge counted once.
+     * @return The number of edges.
+     */
+    public int getEdgeCount() { return adj.length / 2; }
+
+    /**
+     * Returns the neighbours of the given vertex.
+     * @param v The vertex.
+     * @return The neighbours of the vertex in increasing order.
+     */
+    public int[] getNeighbours(int v) { return Arrays.copyOfRange(adj, adjStart[v], adjStart[v + 1]); }
+
+    /**
+     * Returns the number of neighbours of the given vertex.
+     * @param v The vertex.
+     * @return The degree of the vertex.
+     */
+    public int getDegree(int v) { return adjStart[v + 1] - adjStart[v]; }
+
+    /**
+     * Find a colouring of the graph where no two neighbours have the same colour, and each vertex
+     * has a colour of its domain.
+     * @return The array of the colours of the vertices, or {@code null} if there is no such colouring.
+     */
+    public int[] solve() {
+        if(!start()) { return null; }
+        return search(0);
+    }
+
+    /**
+     * Ask this solver to stop its search as soon as possible. This method can be called from any
+     * thread, after which {@code solve} returns {@code null}.
+     */
+    public void cancel() { cancelled = true; }
+
+    /**
+     * Check whether the search of this solver was cancelled.
+     * @return Whether {@code cancel} has been called for this solver.
+     */
+    public boolean isCancelled() { return cancelled; }
+
+    // Allocate the state of the search and propagate the initial domains. Returns false if they
+    // already show that there is no colouring.
+    boolean start() {
+        resetCounts();
+        callCount = 1;
+        if(selfLoop) { return false; }
+        domain = initialDomain.clone();
+        domainSize = new int[n];
+        for(int v = 0; v < n; v++) {
+            for(int w = 0; w < words; w++) { domainSize[v] += Long.bitCount(domain[v * words + w]); }
+            if(domainSize[v] == 0) { return false; }
+        }
+        colour = new int[n];
+        Arrays.fill(colour, -1);
+        queue = new IndexedHeap(n);
+        freeDegree = new int[n];
+        for(int v = 0; v < n; v++) {
+            freeDegree[v] = adjStart[v + 1] - adjStart[v];
+            queue.offer(v, ColouringSolver.priority(domainSize[v], freeDegree[v]));
+        }
+        propagating = propagation != Propagation.FORWARD_CHECKING;
+        // Each colour is removed from each vertex at most once on the way to any level, and
+        // forward checking alone removes at most one colour for each neighbour.
+        trail = new int[2 * (propagating ? n * k : adj.length)];
+        trailSize = 0;
+        levelVertex = new int[n];
+        levelMark = new int[n];
+        if(propagating) {
+            initPropagation();
+            // Propagate the initial domains before the first decision, for good.
+            for(int v = 0; v < n; v++) { markChanged(v); }
+            if(!propagate()) { return false; }
+        }
+        return true;
+    }
+
+    // Set all the counts of the search to zero.
+    void resetCounts() {
+        callCount = 0; fcCount = 0;
+        acCount = 0; allDifferentCount = 0;
+        acRemovals = 0; allDifferentRemovals = 0;
+    }
+
+    // Whether some vertex is still unassigned after the decisions so far.
+    boolean hasUnassigned() { return queue.getSize() > 0; }
+
+    // The vertex that the search would assign next.
+    int peekVertex() { return queue.peek(); }
+
+    // The remaining colours of the unassigned vertex v.
+    int[] getColours(int v) {
+        int[] result = new int[domainSize[v]];
+        int size = 0;
+        for(int c = nextColour(v, 0); c >= 0; c = nextColour(v, c + 1)) { result[size++] = c; }
+        return result;
+    }
+
+    // Assign the colour c to the vertex that the search would assign next, as the decision of
+    // the given level, which must follow the decisions so far. Returns false if there is a cutoff.
+    boolean decide(int level, int c) {
+        int v = queue.poll();
+        changeFreeDegrees(v, -1);
+        levelVertex[level] = v;
+        levelMark[level] = trailSize;
+        colour[v] = c;
+        if(forwardCheck(v, c) && propagateAssignment(v)) {
+            callCount++;
+            return true;
+        }
+        return false;
+    }
+
+    // Search for a colouring that keeps the decisions of the levels below base, starting from
+    // the state after them. Returns the colours of the vertices, or null if there is no such
+    // colouring or the search was cancelled.
+    int[] search(int base) {
+        int level = base;
+        // The colour to try next for the vertex of the current level, -1 to choose the vertex,
+        // or HINTED to try its hinted colour first.
+        int next = -1;
+        while(true) {
+            if(next == -1) {
+                if(level == n) { return colour.clone(); }
+                if(cancelled) { return null; }
+                int v = queue.poll();
+                changeFreeDegrees(v, -1);
+                levelVertex[level] = v;
+                levelMark[level] = trailSize;
+                next = hint == null ? 0 : HINTED;
+            }
+            int v = levelVertex[level];
+            int c = colourToTry(v, next);
+            if(c < 0) {
+                // Every colour of this vertex failed, so go back to try the next colour of
+                // the vertex of the previous level.
+                changeFreeDegrees(v, +1);
+                queue.offer(v, ColouringSolver.priority(domainSize[v], freeDegree[v]));
+                if(level == base) { return null; }
+                level--;
+                next = following(levelVertex[level], colour[levelVertex[level]]);
+                undo(level);
+                continue;
+            }
+            colour[v] = c;
+            if(forwardCheck(v, c) && propagateAssignment(v)) {
+                callCount++;
+                level++;
+                next = -1;
+            }
+            else {
+                next = following(v, c);
+                undo(level);
+            }
+        }
+    }
+
+    // Change the number of unassigned neighbours of the unassigned neighbours of vertex v by
+    // delta, when v is assigned or unassigned, and update their priorities.
+    private void changeFreeDegrees(int v, int delta) {
+        for(int i = adjStart[v]; i < adjStart[v + 1]; i++) {
+            int u = adj[i];
+            if(queue.contains(u)) {
+                freeDegree[u] += delta;
+                queue.update(u, ColouringSolver.priority(domainSize[u], freeDegree[u]));
+            }
+        }
+    }
+
+    // The colour to try for vertex v, given the colour to try next: first its hinted colour, if
+    // that is in its domain, and then the others in increasing order. Returns -1 if none remain.
+    private int colourToTry(int v, int next) {
+        if(next == HINTED) {
+            int h = hint[v];
+            if(h >= 0 && h < k && (domain[v * words + (h >>> 6)] & (1L << h)) != 0) { return h; }
+            next = 0;
+        }
+        int c = nextColour(v, next);
+        if(hint != null && c >= 0 && c == hint[v]) { c = nextColour(v, c + 1); }
+        return c;
+    }
+
+    // The colour to try next for vertex v after its colour c.
+    private int following(int v, int c) {
+        return hint != null && c == hint[v] ? 0 : c + 1;
+    }
+
+    // The smallest colour at least c in the remaining domain of vertex v, or -1 if there is none.
+    private int nextColour(int v, int c) {
+        if(c >= k) { return -1; }
+        int w = c >>> 6;
+        long bits = domain[v * words + w] & (-1L << c);
+        while(bits == 0) {
+            if(++w == words) { return -1; }
+            bits = domain[v * words + w];
+        }
+        return (w << 6) + Long.numberOfTrailingZeros(bits);
+    }
+
+    // Remove the colour c of vertex v from the domains of its unassigned neighbours, recording the
+    // removals on the trail. Returns false if some neighbour would have no colours left.
+    private boolean forwardCheck(int v, int c) {
+        int w = c >>> 6;
+        long bit = 1L << c;
+        for(int i = adjStart[v]; i < adjStart[v + 1]; i++) {
+            int u = adj[i];
+            if(colour[u] >= 0) { continue; }
+            int pos = u * words + w;
+            if((domain[pos] & bit) != 0) {
+                // The last possible value of vertex u causes a forward checking cutoff.
+                if(domainSize[u] == 1) {
+                    fcCount++;
+                    clearChanged();
+                    return false;
+                }
+                remove(u, c);
+            }
+        }
+        return true;
+    }
+
+    // Remove the colour c from the domain of the unassigned vertex u, recording the removal on
+    // the trail, and mark the vertex to be propagated.
+    private void remove(int u, int c) {
+        domain[u * words + (c >>> 6)] &= ~(1L << c);
+        domainSize[u]--;
+        queue.update(u, ColouringSolver.priority(domainSize[u], freeDegree[u]));
+        trail[trailSize++] = u;
+        trail[trailSize++] = c;
+        if(propagating) { markChanged(u); }
+    }
+
+    // Whether the vertex u may have the colour c, which is its colour if it has been assigned.
+    private boolean hasColour(int u, int c) {
+        if(colour[u] >= 0) { return colour[u] == c; }
+        return (domain[u * words + (c >>> 6)] & (1L << c)) != 0;
+    }
+
+    // The smallest colour at least c that the vertex u may have, or -1 if there is none.
+    private int nextPossible(int u, int c) {
+        if(colour[u] >= 0) { return colour[u] >= c ? colour[u] : -1; }
+        return nextColour(u, c);
+    }
+
+    // Allocate the state of the propagation, and the all-different constraints of each vertex
+    // for the ALL_DIFFERENT propagation.
+    private void initPropagation() {
+        changed = new int[n];
+        changedSize = 0;
+        isChanged = new boolean[n];
+        int count = propagation == Propagation.ALL_DIFFERENT ? allDifferent.size() : 0;
+        consStart = new int[count + 1];
+        consOfStart = new int[n + 1];
+        int largest = 0;
+        for(int a = 0; a < count; a++) {
+            int[] vertices = allDifferent.get(a);
+            consStart[a + 1] = consStart[a] + vertices.length;
+            for(int v: vertices) { consOfStart[v + 1]++; }
+            largest = Math.max(largest, vertices.length);
+        }
+        for(int v = 0; v < n; v++) { consOfStart[v + 1] += consOfStart[v]; }
+        consVertex = new int[consStart[count]];
+        consOf = new int[consStart[count]];
+        int[] fill = Arrays.copyOf(consOfStart, n);
+        for(int a = 0; a < count; a++) {
+            int[] vertices = allDifferent.get(a);
+            System.arraycopy(vertices, 0, consVertex, consStart[a], vertices.length);
+            for(int v: vertices) { consOf[fill[v]++] = a; }
+        }
+        pending = new int[count];
+        pendingSize = 0;
+        isPending = new boolean[count];
+        matchedColour = new int[largest];
+        vertexOfColour = new int[k];
+        colourStamp = new int[k];
+        stamp = 0;
+        int nodes = largest + k + 1;
+        index = new int[nodes];
+        low = new int[nodes];
+        component = new int[nodes];
+        edgePos = new int[nodes];
+        path = new int[nodes];
+        stack = new int[nodes];
+        onStack = new boolean[nodes];
+    }
+
+    // Mark the domain of vertex u as changed, to be propagated.
+    private void markChanged(int u) {
+        if(!isChanged[u]) {
+            isChanged[u] = true;
+            changed[changedSize++] = u;
+        }
+    }
+
+    // Forget what remained to propagate after a cutoff, since it is undone along with the rest.
+    private void clearChanged() {
+        while(changedSize > 0) { isChanged[changed[--changedSize]] = false; }
+        while(pendingSize > 0) { isPending[pending[--pendingSize]] = false; }
+    }
+
+    // Propagate the assignment of vertex v, and the removals of its forward checking, beyond
+    // forward checking if so chosen. Returns false if there is a cutoff.
+    private boolean propagateAssignment(int v) {
+        if(!propagating) { return true; }
+        markChanged(v);
+        return propagate();
+    }
+
+    // Propagate the changed domains until nothing more changes, first with arc consistency and
+    // then with the all-different constraints of the changed vertices. Returns false if some
+    // vertex would have no colours left, or some all-different constraint could not be met.
+    private boolean propagate() {
+        boolean ok = true;
+        while(ok && (changedSize > 0 || pendingSize > 0)) {
+            if(changedSize > 0) {
+                int u = changed[--changedSize];
+                isChanged[u] = false;
+                for(int i = consOfStart[u]; i < consOfStart[u + 1]; i++) {
+                    int a = consOf[i];
+                    if(!isPending[a]) {
+                        isPending[a] = true;
+                        pending[pendingSize++] = a;
+                    }
+                }
+                if(colour[u] < 0 && domainSize[u] == 1 && !reviseNeighbours(u)) {
+                    acCount++;
+                    ok = false;
+                }
+            }
+            else {
+                int a = pending[--pendingSize];
+                isPending[a] = false;
+                if(!filterAllDifferent(a)) {
+                    allDifferentCount++;
+                    ok = false;
+                }
+            }
+        }
+        clearChanged();
+        return ok;
+    }
+
+    // Revise the arcs from the unassigned neighbours of the unassigned vertex u, which has only
+    // one colour left, by removing that colour from their domains. Returns false if some
+    // neighbour would have no colours left.
+    private boolean reviseNeighbours(int u) {
+        int c = nextColour(u, 0);
+        for(int i = adjStart[u]; i < adjStart[u + 1]; i++) {
+            int w = adj[i];
+            if(colour[w] < 0 && hasColour(w, c)) {
+                if(domainSize[w] == 1) { return false; }
+                remove(w, c);
+                acRemovals++;
+            }
+        }
+        return true;
+    }
+
+    // Remove from the unassigned vertices of the all-different constraint a the colours that are
+    // in no matching of all its vertices to distinct colours. Given one such matching, a colour
+    // is in some matching exactly when it is matched to the vertex, or the edge between them is
+    // in a strongly connected component of the residual graph where the matched edges go from
+    // the vertices to their colours and the other edges from the colours to the vertices, and a
+    // node for the free colours has edges to them and from every matched colour. Returns false
+    // if there is no matching.
+    private boolean filterAllDifferent(int a) {
+        int from = consStart[a], m = consStart[a + 1] - from;
+        Arrays.fill(vertexOfColour, -1);
+        for(int i = 0; i < m; i++) {
+            matchedColour[i] = -1;
+            stamp++;
+            if(!augment(from, i)) { return false; }
+        }
+        findComponents(from, m);
+        for(int i = 0; i < m; i++) {
+            int u = consVertex[from + i];
+            if(colour[u] >= 0) { continue; }
+            for(int c = nextColour(u, 0); c >= 0; c = nextColour(u, c + 1)) {
+                if(c != matchedColour[i] && component[i] != component[m + c]) {
+                    remove(u, c);
+                    allDifferentRemovals++;
+                }
+            }
+        }
+        return true;
+    }
+
+    // Find an augmenting path from the vertex in position i of the constraint whose vertices
+    // start from position from, and match along it. Returns false if there is none.
+    private boolean augment(int from, int i) {
+        int u = consVertex[from + i];
+        for(int c = nextPossible(u, 0); c >= 0; c = nextPossible(u, c + 1)) {
+            if(colourStamp[c] == stamp) { continue; }
+            colourStamp[c] = stamp;
+            int j = vertexOfColour[c];
+            if(j < 0 || augment(from, j)) {
+                vertexOfColour[c] = i;
+                matchedColour[i] = c;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Number the strongly connected components of the residual graph of the matching of the
+    // m vertices of the constraint whose vertices start from position from, with the algorithm
+    // of Tarjan, keeping the path of the depth first search in an array instead of recursing.
+    private void findComponents(int from, int m) {
+        int nodes = m + k + 1;
+        for(int x = 0; x < nodes; x++) {
+            index[x] = -1;
+            edgePos[x] = 0;
+        }
+        int counter = 0, stackSize = 0, components = 0;
+        for(int s = 0; s < nodes; s++) {
+            if(index[s] >= 0) { continue; }
+            int depth = 0;
+            index[s] = low[s] = counter++;
+            stack[stackSize++] = s;
+            onStack[s] = true;
+            path[depth++] = s;
+            while(depth > 0) {
+                int x = path[depth - 1];
+                int y = successor(from, m, x);
+                if(y >= 0) {
+                    if(index[y] < 0) {
+                        index[y] = low[y] = counter++;
+                        stack[stackSize++] = y;
+                        onStack[y] = true;
+                        path[depth++] = y;
+                    }
+                    else if(onStack[y] && index[y] < low[x]) { low[x] = index[y]; }
+                    continue;
+                }
+                // All successors of x are done, so x is the root of a component or not.
+                depth--;
+                if(depth > 0 && low[x] < low[path[depth - 1]]) { low[path[depth - 1]] = low[x]; }
+                if(low[x] == index[x]) {
+                    int z;
+                    do {
+                        z = stack[--stackSize];
+                        onStack[z] = false;
+                        component[z] = components;
+                    } while(z != x);
+                    components++;
+                }
+            }
+        }
+    }
+
+    // The next successor of the given node in the residual graph of the matching, or -1 if the
+    // node has no more successors. The position of the next edge of each node is in edgePos.
+    private int successor(int from, int m, int x) {
+        int p = edgePos[x];
+        if(x < m) {
+            // A vertex has an edge to its matched colour.
+            edgePos[x] = 1;
+            return p == 0 ? m + matchedColour[x] : -1;
+        }
+        if(x < m + k) {
+            // A colour has edges to the vertices that may have it without being matched to it,
+            // and last one to the node of the free colours if it is matched.
+            int c = x - m;
+            while(p < m) {
+                int i = p++;
+                if(matchedColour[i] != c && hasColour(consVertex[from + i], c)) {
+                    edgePos[x] = p;
+                    return i;
+                }
+            }
+            edgePos[x] = m + 1;
+            return p == m && vertexOfColour[c] >= 0 ? m + k : -1;
+        }
+        // The node of the free colours has edges to them.
+        while(p < k) {
+            int c = p++;
+            if(vertexOfColour[c] < 0) {
+                edgePos[x] = p;
+                return m + c;
+            }
+        }
+        edgePos[x] = k;
+        return -1;
+    }
+
+    // Unassign the vertex of the given level and restore the colours removed since it was assigned.
+    private void undo(int level) {
+        int mark = levelMark[level];
+        while(trailSize > mark) {
+            int c = trail[--trailSize];
+            int u = trail[--trailSize];
+            domain[u * words + (c >>> 6)] |= 1L << c;
+            domainSize[u]++;
+            queue.update(u, ColouringSolver.priority(domainSize[u], freeDegree[u]));
+        }
+        colour[levelVertex[level]] = -1;
+    }
+}
@@ -1,8 +1,9 @@
 import java.util.Random;
 
-// Implement a binary heap for integers used to represent literals in SATSolver.
+// Implement a binary heap for integers used to represent literals in SATSolver. The solvers now
+// use the faster DaryIntHeap instead, and this heap is kept as the baseline of HeapBenchmark.
 
-public class IntHeap {
+public class IntHeap implements LiteralQueue {
     
     // The elements of this heap.
     private int[] data;
@@ -14,6 +15,8 @@ public class IntHeap {
     private int[] clauseCount;
     // Whether the priority is highest-first or lowest-first.
     private boolean highestFirst;
+    // Random ranks used to break ties between literals of equal priority, or null if not used.
+    private int[] tieBreak;
     
     // The array index that represents the literal x for -n <= x <= n.
     private static int getIdx(int literal) {
@@ -30,11 +33,25 @@ public class IntHeap {
         this.highestFirst = highestFirst;
     }
     
+    // Constructor for the binary heap that breaks the ties between literals randomly.
+    public IntHeap(int[] clauseCount, int n, boolean highestFirst, Random rng) {
+        this(clauseCount, n, highestFirst);
+        tieBreak = new int[2 * n];
+        for(int i = 0; i < 2 * n; i++) {
+            tieBreak[i] = rng.nextInt();
+        }
+    }
+    
     // Current size of the heap.
     public int getSize() {
         return size;
     }
     
+    // Check whether the literal e is currently in this heap.
+    public boolean contains(int e) {
+        return loc[getIdx(e)] > 0;
+    }
+    
     // Offer the literal e to this heap.
     public void offer(int e) {
         data[++size] = e;
@@ -74,16 +91,22 @@ public class IntHeap {
         }
     }
     
+    // Whether the literal e1 has a lower priority than the literal e2.
+    private boolean lower(int e1, int e2) {
+        int v1 = clauseCount[getIdx(e1)];
+        int v2 = clauseCount[getIdx(e2)];
+        if(v1 != v2 || tieBreak == null) { return v1 < v2; }
+        return tieBreak[getIdx(e1)] < tieBreak[getIdx(e2)];
+    }
+    
     // Move the element in position idx up in the heap as needed.
     private void siftup(int idx) {
         int e = data[idx];
-        int v = clauseCount[getIdx(e)];
         while(idx > 1) {
             int pidx = idx / 2;
             int pe = data[pidx];
             assert loc[getIdx(pe)] == pidx;
-            int pv = clauseCount[getIdx(pe)];
-            if(pv < v) {
+            if(lower(pe, e)) {
                 loc[getIdx(pe)] = idx;
                 data[idx] = pe;
                 idx = pidx;
@@ -97,16 +120,14 @@ public class IntHeap {
     // Move the element in position idx down in the heap as needed.
     private void siftdown(int idx) {
         int e = data[idx];
-        int v = clauseCount[getIdx(e)];
         while(2 * idx <= size) {
             int cidx = 2 * idx;
-            if(cidx + 1 <= size && clauseCount[getIdx(data[cidx])] < clauseCount[getIdx(data[cidx+1])]) {
+            if(cidx + 1 <= size && lower(data[cidx], data[cidx+1])) {
                 cidx = cidx + 1;
             }
             int ce = data[cidx];
             assert loc[getIdx(ce)] == cidx;
-            int cv = clauseCount[getIdx(data[cidx])];
-            if(cv > v) {
+            if(lower(e, ce)) {
                 data[idx] = ce;
                 loc[getIdx(ce)] = idx;
                 idx = cidx;
@@ -0,0 +1,63 @@
+// Implement a sparse set of integers 0, ..., n - 1 used to represent the sets of active clauses
+// in SATSolver. Adding, removing, membership and clearing all work in constant time without
+// allocating any memory, and the elements can be iterated over by their position.
+
+public class IntSparseSet {
+
+    // The elements of this set, in positions 0, ..., size - 1.
+    private int[] dense;
+    // The position of each element in the dense array, meaningful only for current elements.
+    private int[] sparse;
+    // The number of elements currently in the set.
+    private int size;
+
+    // Constructor for a set that can contain the integers 0, ..., n - 1.
+    public IntSparseSet(int n) {
+        dense = new int[n];
+        sparse = new int[n];
+        size = 0;
+    }
+
+    // Current size of the set.
+    public int size() {
+        return size;
+    }
+
+    // Check whether the element e is currently in this set.
+    public boolean contains(int e) {
+        int i = sparse[e];
+        return i < size && dense[i] == e;
+    }
+
+    // Add the element e to this set.
+    public void add(int e) {
+        if(contains(e)) { return; }
+        dense[size] = e;
+        sparse[e] = size++;
+    }
+
+    // Remove the element e from this set, moving the last element to its position.
+    public void remove(int e) {
+        if(!contains(e)) { return; }
+        int i = sparse[e];
+        int last = dense[--size];
+        dense[i] = last;
+        sparse[last] = i;
+    }
+
+    // The element in position i, for 0 <= i < size.
+    public int get(int i) {
+        return dense[i];
+    }
+
+    // The element in the last position, which is the one most recently added if nothing was removed since.
+    public int last() {
+        assert size > 0;
+        return dense[size - 1];
+    }
+
+    // Remove all elements from this set.
+    public void clear() {
+        size = 0;
+    }
+}
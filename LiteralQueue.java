@@ -0,0 +1,32 @@
+// The priority queue of unassigned literals from which the SAT solvers choose the literal to
+// branch on next. The priorities can come from the clause counts that change whenever clauses
+// are activated or deactivated (DaryIntHeap), or from activities bumped at conflicts (ActivityHeap),
+// so both heuristics can be used by the same search.
+
+public interface LiteralQueue {
+
+    // Current size of the queue.
+    int getSize();
+
+    // Check whether the literal e is currently in this queue.
+    boolean contains(int e);
+
+    // Offer the literal e to this queue.
+    void offer(int e);
+
+    // Extract the literal with the highest priority.
+    int poll();
+
+    // The priority of literal e was decreased, so update the queue.
+    void decrease(int e);
+
+    // The priority of literal e was increased, so update the queue.
+    void increase(int e);
+
+    // The literal e took part in a conflict. Queues whose priorities come from conflicts
+    // should bump its priority, others can ignore this.
+    default void bump(int e) { }
+
+    // A conflict has been analyzed, so the older bumps should count for less from now on.
+    default void decay() { }
+}
@@ -0,0 +1,304 @@
+import java.util.*;
+
+// An incomplete solver for the same CNF clauses as SATSolver that looks for a solution by
+// stochastic local search. Starting from a random assignment, it repeatedly picks a random clause
+// that the assignment leaves unsatisfied and flips the value of one of its variables, chosen with
+// either WalkSAT or ProbSAT according to how many satisfied clauses each flip would break. On large
+// satisfiable problems, such as random 3-SAT below the threshold, this finds a solution far sooner
+// than the complete searches, but since it can never prove that there is none, running out of its
+// budget of flips leaves the answer unknown. The unsatisfied clauses are kept in a sparse set and
+// the break count of every variable is kept up to date at each flip, so that choosing a flip needs
+// to look at nothing but the literals of the chosen clause.
+
+public class LocalSearchSolver {
+
+    /**
+     * The ways to choose which variable of the unsatisfied clause to flip.
+     */
+    public enum Algorithm {
+        /** Flip a variable that breaks no clause if there is one, otherwise with the probability
+         * given by the noise a random variable, and otherwise one that breaks the fewest clauses. */
+        WALKSAT,
+        /** Flip a random variable with the probability of each variable decreasing polynomially
+         * with the number of clauses that its flip would break. */
+        PROBSAT
+    }
+
+    // How many flips are made between checking for cancellation and the clock.
+    private static final int CHECK_INTERVAL = 1024;
+
+    // The number of propositional variables in the system.
+    private final int n;
+    // The clauses and the occurrence lists of the literals in compressed form.
+    private final ClauseStore store;
+
+    // The settings of the search.
+    private Algorithm algorithm = Algorithm.PROBSAT;
+    private double noise = 0.567;
+    private double cb = 2.06;
+    private long seed = 0;
+    private long timeBudget = 0;
+    // Set when the search should stop as soon as possible.
+    private volatile boolean cancelled = false;
+
+    // The outcome and the statistics of the most recent search.
+    private SATSolver.Result result = SATSolver.Result.UNKNOWN;
+    private long flipCount = 0;
+    private int leastUnsatisfied = 0;
+
+    // The state of the search.
+
+    // The current value of each variable.
+    private boolean[] value;
+    // The number of true literals in each clause, and the exclusive or of their variables, which
+    // is the only true variable of the clause whenever the clause has just one true literal.
+    private int[] trueCount;
+    private int[] trueVars;
+    // The number of clauses in which each variable is the only true variable, so that flipping
+    // it would make those clauses unsatisfied.
+    private int[] breakCount;
+    // The clauses that the current assignment leaves unsatisfied.
+    private IntSparseSet unsat;
+    // The probability weight of flipping a variable with the given break count in ProbSAT.
+    private double[] probs;
+    // The variables of the chosen clause and their weights, reused from one flip to the next.
+    private int[] candidates;
+    private double[] weights;
+
+    // Calculate the index of the literal, in the same way as in SATSolver.
+    private static int getIdx(int literal) {
+        if(literal < 0) { return 2 * (-literal) - 1; }
+        else { return 2 * literal - 2; }
+    }
+
+    /**
+     * Create a local search solver for the set of CNF clauses for variables 1, ..., {@code n}.
+     * @param n The number of propositional variables in the system.
+     * @param clauses The array of clauses, in the same format as for {@code SATSolver.solveDPLL}.
+     */
+    public LocalSearchSolver(int n, int[][] clauses) {
+        this(new ClauseStore(n, clauses));
+    }
+
+    /**
+     * Create a local search solver for the clauses in the given clause store, which is shared
+     * with any other solvers for the same clauses.
+     * @param store The clauses and the number of variables of the problem.
+     */
+    public LocalSearchSolver(ClauseStore store) {
+        this.n = store.getVariableCount();
+        this.store = store;
+    }
+
+    /**
+     * Set the way of choosing which variable of the unsatisfied clause to flip.
+     * @param algorithm The algorithm, {@code PROBSAT} by default.
+     */
+    public void setAlgorithm(Algorithm algorithm) { this.algorithm = algorithm; }
+
+    /**
+     * Set the probability of WalkSAT flipping a random variable of the clause instead of one
+     * that breaks the fewest clauses.
+     * @param noise The probability of a random flip, 0.567 by default.
+     */
+    public void setNoise(double noise) { this.noise = noise; }
+
+    /**
+     * Set the exponent of the polynomial that ProbSAT uses to weigh the variables, so that a
+     * variable whose flip breaks b clauses is flipped with a weight proportional to (1 + b) to the
+     * power -cb. The larger the exponent, the greedier the search. The default suits 3-SAT, and
+     * longer clauses want larger exponents, such as 3.1 for 5-SAT and 5.4 for 7-SAT.
+     * @param cb The exponent, 2.06 by default.
+     */
+    public void setExponent(double cb) { this.cb = cb; }
+
+    /**
+     * Set the seed of the random choices, so that the search can be repeated.
+     * @param seed The seed, or zero for a different random search every time, which is the default.
+     */
+    public void setSeed(long seed) { this.seed = seed; }
+
+    /**
+     * Set the time after which the search gives up with the result {@code UNKNOWN}. The clock is
+     * read only every 1024 flips.
+     * @param millis The time allowed for the search in milliseconds, or zero for no limit,
+     * which is the default.
+     */
+    public void setTimeBudget(long millis) { this.timeBudget = millis; }
+
+    /**
+     * Ask this solver to stop its search as soon as possible. This method can be called from any
+     * thread, after which {@code solve} returns {@code null}.
+     */
+    public void cancel() { cancelled = true; }
+
+    /**
+     * Check whether the search of this solver was cancelled.
+     * @return Whether {@code cancel} has been called for this solver.
+     */
+    public boolean isCancelled() { return cancelled; }
+
+    /**
+     * Returns the outcome of the most recent call to {@code solve}, which is never
+     * {@code UNSATISFIABLE}, since local search cannot prove that there is no solution.
+     * @return {@code SATISFIABLE} if a solution was found, otherwise {@code UNKNOWN}.
+     */
+    public SATSolver.Result getResult() { return result; }
+
+    /**
+     * Returns the number of flips made by the most recent call to {@code solve}.
+     * @return The number of flips.
+     */
+    public long getFlips() { return flipCount; }
+
+    /**
+     * Returns the smallest number of unsatisfied clauses of any assignment visited by the most
+     * recent call to {@code solve}, which tells how close an unsuccessful search came.
+     * @return The smallest number of unsatisfied clauses.
+     */
+    public int getLeastUnsatisfied() { return leastUnsatisfied; }
+
+    /**
+     * Search for a solution to the clauses with at most the given number of flips.
+     * @param maxFlips The number of flips allowed, or zero for no limit.
+     * @return Solution array of {@code n + 1} elements giving the truth value of each variable,
+     * or {@code null} if no solution was found within the budget.
+     */
+    public boolean[] solve(long maxFlips) {
+        SplittableRandom rng = seed == 0 ? new SplittableRandom() : new SplittableRandom(seed);
+        initialize(rng);
+        int[] literals = store.getLiterals();
+        int[] start = store.getStarts();
+        long deadline = System.nanoTime() + timeBudget * 1000000;
+        flipCount = 0;
+        leastUnsatisfied = unsat.size();
+        result = SATSolver.Result.UNKNOWN;
+        while(unsat.size() > 0) {
+            if(maxFlips > 0 && flipCount >= maxFlips) { return null; }
+            if(flipCount % CHECK_INTERVAL == 0) {
+                if(cancelled) { return null; }
+                if(timeBudget > 0 && System.nanoTime() > deadline) { return null; }
+            }
+            int c = unsat.get(rng.nextInt(unsat.size()));
+            int v = algorithm == Algorithm.WALKSAT ?
+                walkSat(literals, start[c], start[c + 1], rng) :
+                probSat(literals, start[c], start[c + 1], rng);
+            flip(v);
+            flipCount++;
+            leastUnsatisfied = Math.min(leastUnsatisfied, unsat.size());
+        }
+        result = SATSolver.Result.SATISFIABLE;
+        return Arrays.copyOf(value, n + 1);
+    }
+
+    // Start from a random assignment, and count the true literals of every clause.
+    private void initialize(SplittableRandom rng) {
+        int m = store.size();
+        int[] literals = store.getLiterals();
+        int[] start = store.getStarts();
+        value = new boolean[n + 1];
+        for(int v = 1; v <= n; v++) { value[v] = rng.nextBoolean(); }
+        trueCount = new int[m];
+        trueVars = new int[m];
+        breakCount = new int[n + 1];
+        unsat = new IntSparseSet(m);
+        int longest = 0;
+        for(int c = 0; c < m; c++) {
+            longest = Math.max(longest, start[c + 1] - start[c]);
+            for(int i = start[c]; i < start[c + 1]; i++) {
+                int literal = literals[i];
+                if(value[Math.abs(literal)] == literal > 0) {
+                    trueCount[c]++;
+                    trueVars[c] ^= Math.abs(literal);
+                }
+            }
+            if(trueCount[c] == 0) { unsat.add(c); }
+            else if(trueCount[c] == 1) { breakCount[trueVars[c]]++; }
+        }
+        // No variable can break more clauses than it appears in.
+        int[] occStart = store.getOccurrenceStarts();
+        int mostOccurrences = 0;
+        for(int v = 1; v <= n; v++) {
+            int occurrences = Math.max(occStart[getIdx(v) + 1] - occStart[getIdx(v)],
+                occStart[getIdx(-v) + 1] - occStart[getIdx(-v)]);
+            mostOccurrences = Math.max(mostOccurrences, occurrences);
+        }
+        probs = new double[mostOccurrences + 1];
+        for(int b = 0; b <= mostOccurrences; b++) { probs[b] = Math.pow(1.0 + b, -cb); }
+        candidates = new int[longest];
+        weights = new double[longest];
+    }
+
+    // Choose the variable to flip in the clause in positions from, ..., to - 1 with WalkSAT.
+    private int walkSat(int[] literals, int from, int to, SplittableRandom rng) {
+        int best = 0, bestBreak = Integer.MAX_VALUE, ties = 0;
+        for(int i = from; i < to; i++) {
+            int v = Math.abs(literals[i]);
+            int b = breakCount[v];
+            // A flip that breaks nothing is taken without any noise.
+            if(b == 0) { return v; }
+            if(b < bestBreak) { best = v; bestBreak = b; ties = 1; }
+            // Reservoir sampling chooses uniformly among the variables tied for the fewest breaks.
+            else if(b == bestBreak && rng.nextInt(++ties) == 0) { best = v; }
+        }
+        if(rng.nextDouble() < noise) {
+            return Math.abs(literals[from + rng.nextInt(to - from)]);
+        }
+        return best;
+    }
+
+    // Choose the variable to flip in the clause in positions from, ..., to - 1 with ProbSAT.
+    private int probSat(int[] literals, int from, int to, SplittableRandom rng) {
+        double total = 0;
+        int k = 0;
+        for(int i = from; i < to; i++) {
+            int v = Math.abs(literals[i]);
+            candidates[k] = v;
+            total += probs[breakCount[v]];
+            weights[k++] = total;
+        }
+        double r = rng.nextDouble() * total;
+        for(int i = 0; i < k - 1; i++) {
+            if(r < weights[i]) { return candidates[i]; }
+        }
+        return candidates[k - 1];
+    }
+
+    /*
+     * Flip the value of the variable, updating the true literal counts of the clauses that it
+     * appears in, the unsatisfied clauses and the break counts. The clauses of the literal that
+     * becomes true are updated first, so that the counts never go below zero.
+     */
+    private void flip(int v) {
+        int[] occStart = store.getOccurrenceStarts();
+        int[] occ = store.getOccurrences();
+        int becomesTrue = value[v] ? -v : v;
+        value[v] = !value[v];
+        int idx = getIdx(becomesTrue);
+        for(int i = occStart[idx]; i < occStart[idx + 1]; i++) {
+            int c = occ[i];
+            int count = trueCount[c]++;
+            if(count == 0) {
+                unsat.remove(c);
+                breakCount[v]++;
+            }
+            else if(count == 1) {
+                breakCount[trueVars[c]]--;
+            }
+            trueVars[c] ^= v;
+        }
+        idx ^= 1;
+        for(int i = occStart[idx]; i < occStart[idx + 1]; i++) {
+            int c = occ[i];
+            int count = --trueCount[c];
+            trueVars[c] ^= v;
+            if(count == 0) {
+                unsat.add(c);
+                breakCount[v]--;
+            }
+            else if(count == 1) {
+                breakCount[trueVars[c]]++;
+            }
+        }
+    }
+}
@@ -0,0 +1,288 @@
+import java.util.*;
+
+// Solve weighted partial MaxSAT problems: find an assignment that satisfies all the hard clauses
+// and minimizes the total weight of the soft clauses that it leaves unsatisfied. Each soft clause
+// gets a blocking variable that the clause may use to become satisfied, and the search goes down
+// from above: every solution found gives a new upper bound for the cost, and a weighted sequential
+// counter over the blocking variables lets the next call of the incremental CDCL solver assume that
+// the cost is below that bound. When no such solution exists, the best solution found is optimal.
+
+public class MaxSATSolver {
+
+    /**
+     * A listener that is told every time the search finds a better lower or upper bound.
+     */
+    public interface BoundListener {
+        /**
+         * Report the bounds of the optimal cost known so far.
+         * @param lower The lower bound of the optimal cost.
+         * @param upper The cost of the best solution found so far.
+         */
+        void bounds(long lower, long upper);
+    }
+
+    // The largest number of counter variables that the solver is willing to create.
+    private static final int MAX_COUNTER_VARIABLES = 1 << 24;
+
+    // The problem to solve.
+    private final int n;
+    private final int[][] hard;
+    private final List<int[]> soft = new ArrayList<int[]>();
+    private final List<Integer> weights = new ArrayList<Integer>();
+    // The listener of the bounds, or null for none.
+    private BoundListener listener = null;
+    // The solver of the current call to solve, so that it can be asked to stop.
+    private volatile CDCLSolver current = null;
+    private volatile boolean cancelled = false;
+
+    // The greatest common divisor of the weights, and the last row of the counter, whose
+    // variable costAtLeast[j] says that the cost in the divided weights is at least j.
+    private int scale;
+    private int[] costAtLeast;
+
+    // The outcome and the statistics of the most recent call to solve.
+    private long cost = -1, lowerBound = 0;
+    private boolean optimal = false;
+    private int satCalls = 0, counterVariables = 0;
+
+    /**
+     * Create a MaxSAT solver for the hard clauses for variables 1, ..., {@code n}.
+     * @param n The number of propositional variables in the system.
+     * @param hard The clauses that every solution must satisfy, in the same format as for
+     * {@code SATSolver.solveDPLL}.
+     */
+    public MaxSATSolver(int n, int[][] hard) {
+        this.n = n;
+        this.hard = hard;
+    }
+
+    /**
+     * Add a soft clause whose weight is added to the cost of every solution that leaves it unsatisfied.
+     * @param weight The weight of the clause.
+     * @param clause The literals of the clause.
+     */
+    public void addSoftClause(int weight, int... clause) {
+        if(weight <= 0) {
+            throw new IllegalArgumentException("Soft clause weight " + weight + " is not positive");
+        }
+        for(int literal: clause) {
+            if(literal == 0 || literal < -n || literal > n) {
+                throw new IllegalArgumentException("Illegal literal value " + literal + " in soft clause " + soft.size());
+            }
+        }
+        soft.add(clause.clone());
+        weights.add(weight);
+    }
+
+    /**
+     * Set the listener that is told about each improvement of the bounds during the search.
+     * @param listener The listener, or {@code null} for none, which is the default.
+     */
+    public void setBoundListener(BoundListener listener) { this.listener = listener; }
+
+    /**
+     * Ask this solver to stop its search as soon as possible, after which {@code solve} returns
+     * the best solution found so far, if any, and {@code isOptimal} returns false.
+     */
+    public void cancel() {
+        cancelled = true;
+        CDCLSolver s = current;
+        if(s != null) { s.cancel(); }
+    }
+
+    /**
+     * Returns the cost of the solution returned by the most recent call to {@code solve}.
+     * @return The total weight of the soft clauses that the solution leaves unsatisfied,
+     * or -1 if no solution was found.
+     */
+    public long getCost() { return cost; }
+
+    /**
+     * Returns the best lower bound of the optimal cost known at the end of the most recent
+     * call to {@code solve}. For an optimal solution, this equals its cost.
+     * @return The lower bound.
+     */
+    public long getLowerBound() { return lowerBound; }
+
+    /**
+     * Check whether the solution returned by the most recent call to {@code solve} was proven
+     * optimal by the solver finding no solution of a lower cost.
+     * @return Whether the solution is optimal.
+     */
+    public boolean isOptimal() { return optimal; }
+
+    /**
+     * Returns the number of calls to the SAT solver made by the most recent call to {@code solve}.
+     * @return The number of SAT calls.
+     */
+    public int getSatCalls() { return satCalls; }
+
+    /**
+     * Returns the number of variables in the counter of the cost in the most recent call to
+     * {@code solve}. The counter has one variable for each soft clause and each possible cost
+     * below the first upper bound, after dividing the weights by their greatest common divisor.
+     * @return The number of counter variables.
+     */
+    public int getCounterVariables() { return counterVariables; }
+
+    /**
+     * Find a solution of the hard clauses that minimizes the total weight of the unsatisfied
+     * soft clauses.
+     * @return Solution array of {@code n + 1} elements giving the truth value of each variable,
+     * or {@code null} if the hard clauses have no solution.
+     */
+    public boolean[] solve() {
+        int s = soft.size();
+        cost = -1;
+        lowerBound = 0;
+        optimal = false;
+        satCalls = counterVariables = 0;
+        // Dividing the weights by their greatest common divisor keeps the counter small.
+        scale = 1;
+        if(s > 0) {
+            scale = 0;
+            for(int weight: weights) { scale = gcd(scale, weight); }
+        }
+        int[] w = new int[s];
+        for(int i = 0; i < s; i++) { w[i] = weights.get(i) / scale; }
+
+        // First find out whether all soft clauses can be satisfied, and if not, find any solution
+        // to get the first upper bound, whose size determines the size of the counter.
+        CDCLSolver solver = new CDCLSolver(n + s, relaxed(new int[0][]));
+        int[] assumptions = new int[s];
+        for(int i = 0; i < s; i++) { assumptions[i] = -(n + i + 1); }
+        boolean[] best = call(solver, assumptions);
+        if(best == null) {
+            if(cancelled) { return null; }
+            // At least one of the soft clauses in the core is left unsatisfied.
+            int[] core = solver.getFailedAssumptions();
+            int minWeight = Integer.MAX_VALUE;
+            for(int literal: core) { minWeight = Math.min(minWeight, w[-literal - n - 1]); }
+            if(core.length > 0) { lowerBound = (long)minWeight * scale; }
+            best = call(solver);
+            // Without the assumptions, only the hard clauses can have no solution.
+            if(best == null) { return null; }
+        }
+        long bound = evaluate(best, w);
+        improved(bound);
+
+        // Build the counter up to the current bound, and keep assuming that the cost is below the
+        // bound of the best solution found so far, until there is no such solution.
+        if(bound > Integer.MAX_VALUE) {
+            throw new IllegalStateException("The cost " + cost + " is too large for the counter encoding");
+        }
+        if(bound > 0 && !cancelled) {
+            int[][] counter = counter(w, (int)bound);
+            solver = new CDCLSolver(n + s + counterVariables, relaxed(counter));
+            while(bound > 0) {
+                boolean[] model = call(solver, -costAtLeast[(int)bound]);
+                if(model == null) {
+                    // The cost cannot be below the bound, which proves the best solution optimal.
+                    if(!cancelled) {
+                        lowerBound = cost;
+                        if(listener != null) { listener.bounds(lowerBound, cost); }
+                    }
+                    break;
+                }
+                best = model;
+                bound = evaluate(best, w);
+                improved(bound);
+            }
+        }
+        optimal = lowerBound == cost;
+        return Arrays.copyOf(best, n + 1);
+    }
+
+    // Call the SAT solver with the given assumptions, remembering the solver to allow cancelling.
+    private boolean[] call(CDCLSolver solver, int... assumptions) {
+        current = solver;
+        if(cancelled) { solver.cancel(); }
+        satCalls++;
+        boolean[] result = solver.solve(assumptions);
+        current = null;
+        return result;
+    }
+
+    // Record the cost of the new best solution, given in the divided weights, and tell the listener.
+    private void improved(long bound) {
+        cost = bound * scale;
+        if(listener != null) { listener.bounds(lowerBound, cost); }
+    }
+
+    // The total weight of the soft clauses that the solution leaves unsatisfied.
+    private long evaluate(boolean[] solution, int[] w) {
+        long total = 0;
+        for(int i = 0; i < soft.size(); i++) {
+            boolean sat = false;
+            for(int literal: soft.get(i)) {
+                if(solution[Math.abs(literal)] == literal > 0) { sat = true; break; }
+            }
+            if(!sat) { total += w[i]; }
+        }
+        return total;
+    }
+
+    // The hard clauses, followed by each soft clause with its blocking variable, followed by the
+    // given clauses of the counter.
+    private int[][] relaxed(int[][] counter) {
+        int s = soft.size();
+        int extra = counter.length;
+        int[][] result = Arrays.copyOf(hard, hard.length + s + extra);
+        for(int i = 0; i < s; i++) {
+            int[] clause = Arrays.copyOf(soft.get(i), soft.get(i).length + 1);
+            clause[clause.length - 1] = n + i + 1;
+            result[hard.length + i] = clause;
+        }
+        System.arraycopy(counter, 0, result, hard.length + s, extra);
+        return result;
+    }
+
+    /*
+     * The weighted sequential counter over the blocking variables, for costs up to the bound.
+     * The variable r(i, j) says that the blocking variables of the first i soft clauses have
+     * the total weight at least j, for j up to the smaller of the bound and the total weight
+     * of those clauses. Larger weights are counted as the bound. The last row is also made
+     * monotone, so that assuming not-r(s, k) is enough to keep the cost below k.
+     */
+    private int[][] counter(int[] w, int bound) {
+        int s = w.length;
+        // The number of variables in each row, at most the bound.
+        int[] caps = new int[s];
+        long total = 0, sum = 0;
+        for(int i = 0; i < s; i++) {
+            sum = Math.min(sum + w[i], bound);
+            caps[i] = (int)sum;
+            total += sum;
+        }
+        if(total > MAX_COUNTER_VARIABLES) {
+            throw new IllegalStateException("The counter for cost " + cost + " would need " + total + " variables");
+        }
+        counterVariables = (int)total;
+        List<int[]> clauses = new ArrayList<int[]>();
+        int[] prev = null; // The variables of the previous row, indexed by the weight.
+        int next = n + s + 1;
+        for(int i = 0; i < s; i++) {
+            int cap = caps[i];
+            int[] row = new int[cap + 1];
+            for(int j = 1; j <= cap; j++) { row[j] = next++; }
+            int b = n + i + 1;
+            for(int j = 1; j <= Math.min(w[i], cap); j++) { clauses.add(new int[] { -b, row[j] }); }
+            if(prev != null) {
+                for(int j = 1; j < prev.length; j++) {
+                    clauses.add(new int[] { -prev[j], row[j] });
+                    clauses.add(new int[] { -b, -prev[j], row[Math.min(j + w[i], cap)] });
+                }
+            }
+            prev = row;
+        }
+        for(int j = 2; j < prev.length; j++) { clauses.add(new int[] { -prev[j], prev[j - 1] }); }
+        costAtLeast = prev;
+        return clauses.toArray(new int[0][]);
+    }
+
+    // The greatest common divisor of a and b, where gcd(0, b) = b.
+    private static int gcd(int a, int b) {
+        while(b != 0) { int t = a % b; a = b; b = t; }
+        return a;
+    }
+}
@@ -0,0 +1,187 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+// Solve a graph colouring problem of the IntColouringSolver engine in parallel, by splitting the
+// first few decision levels of its search into tasks in a ForkJoinPool, one task for each colour of
+// the vertex that the search would choose at that level. Idle worker threads steal the tasks from
+// the busy ones. Each task has its own copy of the state of the search, which it brings to its
+// node of the search tree by making the decisions of the levels above it again, and below the
+// split levels it searches its subtree alone. As soon as some task finds a colouring, the tasks
+// not yet started are skipped and the running searches are asked to stop. The counts of each
+// worker thread are kept apart while the tasks run, and merged when the search is over.
+
+public class ParallelColouringSolver {
+
+    // The problem to solve, which is never searched itself, only copied for the tasks.
+    private final IntColouringSolver problem;
+    // How many decision levels are split into tasks.
+    private final int depth;
+
+    // The colouring found by some task, or null if none has been found.
+    private final AtomicReference<int[]> found = new AtomicReference<int[]>();
+    // The solvers of the tasks currently searching, so that they can be asked to stop.
+    private final Set<IntColouringSolver> running = ConcurrentHashMap.newKeySet();
+    // The counts of the tasks, calls and cutoffs of each worker thread, written only by that thread.
+    private final Map<Thread, long[]> threadCounts = new ConcurrentHashMap<Thread, long[]>();
+    // The positions of the counts in the arrays of threadCounts.
+    private static final int TASKS = 0, CALLS = 1, FC = 2, AC = 3, ALL_DIFFERENT = 4;
+
+    // The counts of the most recent call to solve, merged over the worker threads.
+    private long[] counts = new long[5];
+    private List<long[]> perThread = new ArrayList<long[]>();
+    private long time = 0;
+
+    /**
+     * Create a parallel solver for the colouring problem of the given solver, with its graph,
+     * domains, all-different constraints and propagation as they are now.
+     * @param problem The solver of the colouring problem.
+     * @param depth The number of decision levels to split into tasks.
+     */
+    public ParallelColouringSolver(IntColouringSolver problem, int depth) {
+        this.problem = new IntColouringSolver(problem);
+        this.depth = depth;
+    }
+
+    /**
+     * Find a colouring in the common ForkJoinPool.
+     * @return The array of the colours of the vertices, or {@code null} if there is no such colouring.
+     */
+    public int[] solve() {
+        return solve(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Find a colouring by searching the tasks in the given ForkJoinPool.
+     * @param pool The pool whose worker threads search the tasks.
+     * @return The array of the colours of the vertices, or {@code null} if there is no such colouring.
+     */
+    public int[] solve(ForkJoinPool pool) {
+        long startTime = System.nanoTime();
+        found.set(null);
+        running.clear();
+        threadCounts.clear();
+        pool.invoke(new Split(new int[0]));
+        // All the tasks have been joined, so the counts of every thread are final.
+        counts = new long[5];
+        perThread = new ArrayList<long[]>(threadCounts.values());
+        for(long[] c: perThread) {
+            for(int i = 0; i < counts.length; i++) { counts[i] += c[i]; }
+        }
+        time = System.nanoTime() - startTime;
+        return found.get();
+    }
+
+    /**
+     * Returns how many tasks were searched in the most recent call to {@code solve}.
+     * @return The number of tasks, not counting those skipped after a colouring was found.
+     */
+    public long getTaskCount() { return counts[TASKS]; }
+
+    /**
+     * Returns how many worker threads searched some task in the most recent call to {@code solve}.
+     * @return The number of threads.
+     */
+    public int getThreadCount() { return perThread.size(); }
+
+    /**
+     * Accessor method for call count.
+     * @return The count of how many decisions all the tasks have made, plus one, counting each
+     * decision of the split levels once.
+     */
+    public long getCallCount() { return counts[CALLS]; }
+
+    /**
+     * Accessor method for forward checking cutoff count.
+     * @return How many forward checking cutoffs have taken place in all the tasks.
+     */
+    public long getFcCount() { return counts[FC]; }
+
+    /**
+     * Accessor method for arc consistency cutoff count.
+     * @return How many arc consistency cutoffs have taken place in all the tasks.
+     */
+    public long getAcCount() { return counts[AC]; }
+
+    /**
+     * Accessor method for all-different cutoff count.
+     * @return How many all-different cutoffs have taken place in all the tasks.
+     */
+    public long getAllDifferentCount() { return counts[ALL_DIFFERENT]; }
+
+    /**
+     * Summarize the counts of the most recent call to {@code solve}, in total and for each
+     * worker thread, to show how evenly the work was spread.
+     * @return A multiline report of the counts.
+     */
+    public String report() {
+        StringBuilder result = new StringBuilder();
+        result.append("Searched " + counts[TASKS] + " tasks split at depth " + depth + " in "
+        + (time / 1000000) + " ms with " + perThread.size() + " threads, " + counts[CALLS]
+        + " calls, " + counts[FC] + " forward checking, " + counts[AC] + " arc consistency and "
+        + counts[ALL_DIFFERENT] + " all-different cutoffs.\n");
+        for(int i = 0; i < perThread.size(); i++) {
+            long[] c = perThread.get(i);
+            result.append("Thread " + i + ": " + c[TASKS] + " tasks, " + c[CALLS] + " calls, "
+            + (c[FC] + c[AC] + c[ALL_DIFFERENT]) + " cutoffs\n");
+        }
+        return result.toString();
+    }
+
+    // Add the counts of the solver of a finished task to those of the current thread.
+    private void addCounts(IntColouringSolver solver) {
+        long[] c = threadCounts.computeIfAbsent(Thread.currentThread(), t -> new long[5]);
+        c[TASKS]++;
+        c[CALLS] += solver.getCallCount();
+        c[FC] += solver.getFcCount();
+        c[AC] += solver.getAcCount();
+        c[ALL_DIFFERENT] += solver.getAllDifferentCount();
+    }
+
+    // The task of the node of the search tree reached by the given colours of the vertices of
+    // the levels above it. Above the split depth, it forks a task for each colour of the vertex
+    // of its level, and at the split depth, it searches its subtree.
+    private class Split extends RecursiveAction {
+        private final int[] decisions;
+
+        public Split(int[] decisions) {
+            this.decisions = decisions;
+        }
+
+        // The important method of every ForkJoinTask.
+        public void compute() {
+            if(found.get() != null) { return; }
+            IntColouringSolver solver = new IntColouringSolver(problem);
+            running.add(solver);
+            if(found.get() != null) { solver.cancel(); }
+            int level = decisions.length;
+            // The decisions above the parent were counted in the tasks that made them first,
+            // so only the decision of this node is counted here.
+            boolean ok = solver.start();
+            for(int i = 0; ok && i < level; i++) {
+                if(i == level - 1) { solver.resetCounts(); }
+                ok = solver.decide(i, decisions[i]);
+            }
+            List<Split> children = new ArrayList<Split>();
+            int[] solution = null;
+            if(ok) {
+                if(level < depth && solver.hasUnassigned()) {
+                    for(int c: solver.getColours(solver.peekVertex())) {
+                        int[] next = Arrays.copyOf(decisions, level + 1);
+                        next[level] = c;
+                        children.add(new Split(next));
+                    }
+                }
+                else { solution = solver.search(level); }
+            }
+            running.remove(solver);
+            addCounts(solver);
+            if(solution != null && found.compareAndSet(null, solution)) {
+                // Ask the searches of all the other tasks to stop.
+                for(IntColouringSolver other: running) { other.cancel(); }
+            }
+            // The forked children are available for idle workers to steal.
+            invokeAll(children);
+        }
+    }
+}
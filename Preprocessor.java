@@ -0,0 +1,520 @@
+import java.util.*;
+
+// Simplify a set of CNF clauses before the search, so that the search has fewer variables and
+// clauses to deal with. The simplifications are the removal of duplicate clauses, subsumption,
+// self-subsuming strengthening, failed literal probing and bounded variable elimination, repeated
+// until they no longer change anything. The remaining variables are renumbered consecutively, and
+// a solution of the simplified clauses can be mapped back into a solution of the original clauses.
+
+public class Preprocessor {
+
+    // At most this many rounds of all simplifications are done.
+    private static final int MAX_ROUNDS = 5;
+    // Variables with more occurrences than this are not considered for elimination.
+    private static final int MAX_OCCURRENCES = 32;
+    // Variables whose resolvents would be longer than this are not eliminated.
+    private static final int MAX_RESOLVENT = 20;
+    // The total number of literals that failed literal probing may visit in each round.
+    private static final long PROBE_BUDGET = 20000000;
+    // The value returned by subsumes when the first clause subsumes the second.
+    private static final int SUBSUMES = Integer.MAX_VALUE;
+
+    // The original problem.
+    private final int n;
+    private final int[][] original;
+    // The current clauses, each sorted by literal value, with null for deleted clauses.
+    private List<int[]> clauses = new ArrayList<int[]>();
+    private int liveCount = 0;
+    // For each literal index, the clauses that contain or used to contain that literal.
+    // The deleted and strengthened clauses are removed from these lists lazily.
+    private int[][] occ;
+    private int[] occCount;
+    // The value of each variable fixed at the top level: +1 true, -1 false, 0 not fixed.
+    private int[] value;
+    // The literals fixed but not yet propagated through the clauses.
+    private int[] units;
+    private int unitHead = 0, unitTail = 0;
+    // The clauses waiting to be checked for subsuming or strengthening other clauses.
+    private ArrayDeque<Integer> touched = new ArrayDeque<Integer>();
+    private BitSet queued = new BitSet();
+    // The eliminated variables in the order of elimination, each with the clauses it was in.
+    private boolean[] eliminated;
+    private List<Integer> elimVars = new ArrayList<Integer>();
+    private List<int[][]> elimClauses = new ArrayList<int[][]>();
+    // Whether the clauses were found to have no solution.
+    private boolean unsat = false;
+    // The renumbering of the remaining variables, and the number of variables that remain.
+    private int[] toNew;
+    private int newN = 0;
+    // Marks used in subsumption checks and probing.
+    private int[] mark;
+    private int stamp = 0;
+
+    // Statistics of the preprocessing.
+    private int duplicates = 0, subsumed = 0, strengthened = 0, failedLiterals = 0;
+    private int fixedCount = 0, originalClauses = 0;
+    private long time = 0;
+
+    // Calculate the index of the literal, in the same way as in SATSolver.
+    private static int getIdx(int literal) {
+        if(literal < 0) { return 2 * (-literal) - 1; }
+        else { return 2 * literal - 2; }
+    }
+
+    /**
+     * Create a preprocessor for the set of CNF clauses for variables 1, ..., {@code n}.
+     * @param n The number of propositional variables in the system.
+     * @param clauses The array of clauses, in the same format as for {@code SATSolver.solveDPLL}.
+     * The array and its clauses are not modified.
+     */
+    public Preprocessor(int n, int[][] clauses) {
+        this.n = n;
+        this.original = clauses;
+    }
+
+    /**
+     * Simplify the clauses given to the constructor.
+     * @return The simplified clauses for the variables 1, ..., {@code getVariableCount()},
+     * or {@code null} if the clauses were found to have no solution.
+     */
+    public int[][] preprocess() {
+        long startTime = System.nanoTime();
+        occ = new int[2 * n][];
+        occCount = new int[2 * n];
+        for(int i = 0; i < 2 * n; i++) { occ[i] = new int[4]; }
+        value = new int[n + 1];
+        units = new int[n];
+        eliminated = new boolean[n + 1];
+        mark = new int[2 * n];
+        for(int c = 0; c < original.length; c++) {
+            // Ignore nonexistent and empty clauses, as the solver does.
+            if(original[c] == null || original[c].length == 0) { continue; }
+            for(int literal: original[c]) {
+                if(literal == 0 || literal < -n || literal > n) {
+                    throw new IllegalArgumentException("Illegal literal value " + literal + " in clause " + c);
+                }
+            }
+            originalClauses++;
+            addClause(original[c].clone());
+        }
+        propagateUnits();
+        removeDuplicates();
+        for(int round = 0; round < MAX_ROUNDS && !unsat; round++) {
+            long before = changes();
+            subsume();
+            probe();
+            eliminate();
+            // Stop once a round no longer changes anything.
+            if(changes() == before) { break; }
+        }
+        int[][] result = unsat ? null : renumber();
+        time = System.nanoTime() - startTime;
+        return result;
+    }
+
+    /**
+     * Map a solution of the simplified clauses back to a solution of the original clauses.
+     * @param solution Solution array of {@code getVariableCount() + 1} elements for the
+     * simplified clauses returned by {@code preprocess}.
+     * @return Solution array of {@code n + 1} elements for the original clauses.
+     */
+    public boolean[] extendModel(boolean[] solution) {
+        boolean[] model = new boolean[n + 1];
+        for(int v = 1; v <= n; v++) {
+            if(value[v] != 0) { model[v] = value[v] > 0; }
+            else if(toNew[v] > 0) { model[v] = solution[toNew[v]]; }
+        }
+        // The eliminated variables are given values in the reverse order of their elimination.
+        // A variable is made true only if some clause that contains it positively needs it.
+        for(int i = elimVars.size() - 1; i >= 0; i--) {
+            int v = elimVars.get(i);
+            model[v] = false;
+            for(int[] clause: elimClauses.get(i)) {
+                if(Arrays.binarySearch(clause, v) >= 0 && !satisfied(clause, model)) {
+                    model[v] = true;
+                    break;
+                }
+            }
+        }
+        return model;
+    }
+
+    /**
+     * Returns the number of variables in the simplified clauses.
+     * @return The number of variables that remain after preprocessing.
+     */
+    public int getVariableCount() { return newN; }
+
+    /**
+     * Returns the number of clauses in the simplified problem.
+     * @return The number of clauses that remain after preprocessing.
+     */
+    public int getClauseCount() { return liveCount; }
+
+    /**
+     * Returns the number of variables whose value was fixed by unit clauses or probing.
+     * @return The number of fixed variables.
+     */
+    public int getFixedCount() { return fixedCount; }
+
+    /**
+     * Returns the number of variables removed by bounded variable elimination.
+     * @return The number of eliminated variables.
+     */
+    public int getEliminatedCount() { return elimVars.size(); }
+
+    /**
+     * Returns the time spent in preprocessing.
+     * @return The preprocessing time in milliseconds.
+     */
+    public long getTime() { return time / 1000000; }
+
+    /**
+     * Summarize the reductions made by the most recent call to {@code preprocess}.
+     * @return A one-line report of the preprocessing.
+     */
+    public String report() {
+        return "Preprocessed " + n + " variables and " + originalClauses + " clauses into "
+        + newN + " variables and " + liveCount + " clauses in " + getTime() + " ms: "
+        + duplicates + " duplicates, " + subsumed + " subsumed, " + strengthened + " strengthened, "
+        + failedLiterals + " failed literals, " + fixedCount + " fixed, " + elimVars.size()
+        + " eliminated" + (unsat ? ", unsatisfiable." : ".");
+    }
+
+    // The total number of simplifications made so far.
+    private long changes() {
+        return (long)duplicates + subsumed + strengthened + failedLiterals + fixedCount + elimVars.size();
+    }
+
+    // Whether some literal of the clause is true in the model.
+    private static boolean satisfied(int[] clause, boolean[] model) {
+        for(int literal: clause) {
+            if(model[Math.abs(literal)] == literal > 0) { return true; }
+        }
+        return false;
+    }
+
+    // The value of the literal fixed at the top level: +1 true, -1 false, 0 not fixed.
+    private int litValue(int literal) {
+        return literal > 0 ? value[literal] : -value[-literal];
+    }
+
+    // Fix the literal to be true at the top level.
+    private void assign(int literal) {
+        int val = litValue(literal);
+        if(val < 0) { unsat = true; }
+        if(val != 0) { return; }
+        value[Math.abs(literal)] = literal > 0 ? +1 : -1;
+        units[unitTail++] = literal;
+        fixedCount++;
+    }
+
+    // Add the clause to the problem, simplifying it with the fixed values. Returns the index of
+    // the new clause, or -1 if the clause is satisfied, tautological or a unit clause.
+    private int addClause(int[] lits) {
+        Arrays.sort(lits);
+        int size = 0;
+        for(int i = 0; i < lits.length; i++) {
+            int literal = lits[i];
+            if(size > 0 && lits[size - 1] == literal) { continue; }
+            if(Arrays.binarySearch(lits, -literal) >= 0) { return -1; }
+            int val = litValue(literal);
+            if(val > 0) { return -1; }
+            if(val == 0) { lits[size++] = literal; }
+        }
+        if(size == 0) { unsat = true; return -1; }
+        if(size == 1) { assign(lits[0]); return -1; }
+        int[] clause = size == lits.length ? lits : Arrays.copyOf(lits, size);
+        int c = clauses.size();
+        clauses.add(clause);
+        liveCount++;
+        for(int literal: clause) {
+            int idx = getIdx(literal);
+            if(occCount[idx] == occ[idx].length) { occ[idx] = Arrays.copyOf(occ[idx], 2 * occCount[idx]); }
+            occ[idx][occCount[idx]++] = c;
+        }
+        touch(c);
+        return c;
+    }
+
+    // Remove the clause from the problem.
+    private void delete(int c) {
+        clauses.set(c, null);
+        liveCount--;
+    }
+
+    // Put the clause in the queue of clauses to check for subsumption.
+    private void touch(int c) {
+        if(!queued.get(c)) { queued.set(c); touched.add(c); }
+    }
+
+    // Remove the literal from the clause c. A clause that becomes unit fixes its other literal.
+    private void strengthen(int c, int literal) {
+        int[] clause = clauses.get(c);
+        int[] smaller = new int[clause.length - 1];
+        int j = 0;
+        for(int lit: clause) {
+            if(lit != literal) { smaller[j++] = lit; }
+        }
+        if(smaller.length == 1) {
+            delete(c);
+            assign(smaller[0]);
+        }
+        else {
+            clauses.set(c, smaller);
+            touch(c);
+        }
+    }
+
+    // Remove the deleted clauses and the clauses that no longer contain the literal of index idx
+    // from its occurrence list. Returns the number of clauses that remain in the list.
+    private int occurrences(int idx) {
+        int literal = idx % 2 == 0 ? idx / 2 + 1 : -(idx / 2 + 1);
+        int[] list = occ[idx];
+        int j = 0;
+        for(int i = 0; i < occCount[idx]; i++) {
+            int[] clause = clauses.get(list[i]);
+            if(clause != null && Arrays.binarySearch(clause, literal) >= 0) { list[j++] = list[i]; }
+        }
+        occCount[idx] = j;
+        return j;
+    }
+
+    // Propagate the fixed literals through the clauses, removing the satisfied clauses and the
+    // false literals from the others.
+    private void propagateUnits() {
+        while(unitHead < unitTail && !unsat) {
+            int p = units[unitHead++];
+            int idx = getIdx(p);
+            int count = occurrences(idx);
+            for(int i = 0; i < count; i++) { delete(occ[idx][i]); }
+            occCount[idx] = 0;
+            int idxn = getIdx(-p);
+            count = occurrences(idxn);
+            int[] list = occ[idxn];
+            for(int i = 0; i < count; i++) {
+                if(clauses.get(list[i]) != null) { strengthen(list[i], -p); }
+            }
+            occCount[idxn] = 0;
+        }
+    }
+
+    // Remove the duplicate clauses by sorting the clauses so that equal clauses are adjacent.
+    private void removeDuplicates() {
+        List<Integer> live = new ArrayList<Integer>();
+        for(int c = 0; c < clauses.size(); c++) {
+            if(clauses.get(c) != null) { live.add(c); }
+        }
+        Collections.sort(live, (c1, c2) -> {
+            int[] a = clauses.get(c1), b = clauses.get(c2);
+            if(a.length != b.length) { return a.length - b.length; }
+            return Arrays.compare(a, b);
+        });
+        for(int i = 1; i < live.size(); i++) {
+            if(Arrays.equals(clauses.get(live.get(i - 1)), clauses.get(live.get(i)))) {
+                delete(live.get(i - 1));
+                duplicates++;
+            }
+        }
+    }
+
+    // Check whether the clause c1 subsumes the clause c2, returning SUBSUMES if it does. Otherwise,
+    // if c1 subsumes c2 with the literal l of c1 negated, returns l so that -l can be removed from
+    // c2 by self-subsuming resolution. Returns 0 if neither is the case.
+    private int subsumes(int[] c1, int[] c2) {
+        stamp++;
+        for(int literal: c2) { mark[getIdx(literal)] = stamp; }
+        int flip = 0;
+        for(int literal: c1) {
+            if(mark[getIdx(literal)] == stamp) { continue; }
+            if(flip == 0 && mark[getIdx(-literal)] == stamp) { flip = literal; }
+            else { return 0; }
+        }
+        return flip == 0 ? SUBSUMES : flip;
+    }
+
+    // Use each touched clause to remove the clauses that it subsumes and to strengthen the
+    // clauses with which it resolves into a subsuming clause.
+    private void subsume() {
+        while(!touched.isEmpty() && !unsat) {
+            int c = touched.poll();
+            queued.clear(c);
+            int[] clause = clauses.get(c);
+            if(clause == null) { continue; }
+            // Every candidate contains the literal of the clause with the fewest occurrences,
+            // either as such or negated.
+            int best = clause[0], bestCount = Integer.MAX_VALUE;
+            for(int literal: clause) {
+                int count = occCount[getIdx(literal)] + occCount[getIdx(-literal)];
+                if(count < bestCount) { best = literal; bestCount = count; }
+            }
+            for(int side = 0; side < 2; side++) {
+                int idx = getIdx(side == 0 ? best : -best);
+                int count = occurrences(idx);
+                int[] list = occ[idx];
+                for(int i = 0; i < count; i++) {
+                    int d = list[i];
+                    int[] other = clauses.get(d);
+                    if(d == c || other == null || other.length < clause.length) { continue; }
+                    int result = subsumes(clause, other);
+                    if(result == SUBSUMES) { delete(d); subsumed++; }
+                    else if(result != 0) { strengthen(d, -result); strengthened++; }
+                }
+            }
+            propagateUnits();
+        }
+    }
+
+    // The literals implied by making the literal true, or null if that leads to a contradiction.
+    // The number of literals visited is subtracted from the budget.
+    private int[] implied(int literal, long[] budget) {
+        int[] trail = new int[16];
+        int size = 0;
+        trail[size++] = literal;
+        value[Math.abs(literal)] = literal > 0 ? +1 : -1;
+        boolean conflict = false;
+        for(int head = 0; head < size && !conflict; head++) {
+            int idx = getIdx(-trail[head]);
+            for(int i = 0; i < occCount[idx] && !conflict; i++) {
+                int[] clause = clauses.get(occ[idx][i]);
+                if(clause == null) { continue; }
+                budget[0] -= clause.length;
+                int free = 0, unassigned = 0;
+                boolean sat = false;
+                for(int lit: clause) {
+                    int val = litValue(lit);
+                    if(val > 0) { sat = true; break; }
+                    if(val == 0) { unassigned++; free = lit; }
+                }
+                if(sat || unassigned > 1) { continue; }
+                if(unassigned == 0) { conflict = true; break; }
+                if(size == trail.length) { trail = Arrays.copyOf(trail, 2 * size); }
+                trail[size++] = free;
+                value[Math.abs(free)] = free > 0 ? +1 : -1;
+            }
+        }
+        for(int i = 0; i < size; i++) { value[Math.abs(trail[i])] = 0; }
+        return conflict ? null : Arrays.copyOf(trail, size);
+    }
+
+    // Probe both literals of each variable that appears in some binary clause. If one of them
+    // leads to a contradiction, the other one is fixed, and the literals implied by both are fixed.
+    private void probe() {
+        long[] budget = { PROBE_BUDGET };
+        for(int v = 1; v <= n && !unsat && budget[0] > 0; v++) {
+            if(value[v] != 0 || eliminated[v] || !inBinary(v)) { continue; }
+            int[] pos = implied(v, budget);
+            if(pos == null) { failedLiterals++; assign(-v); propagateUnits(); continue; }
+            int[] neg = implied(-v, budget);
+            if(neg == null) { failedLiterals++; assign(v); propagateUnits(); continue; }
+            stamp++;
+            for(int i = 1; i < pos.length; i++) { mark[getIdx(pos[i])] = stamp; }
+            for(int i = 1; i < neg.length; i++) {
+                if(mark[getIdx(neg[i])] == stamp) { assign(neg[i]); }
+            }
+            propagateUnits();
+        }
+        subsume();
+    }
+
+    // Whether the variable appears in some binary clause.
+    private boolean inBinary(int v) {
+        for(int side = 0; side < 2; side++) {
+            int idx = getIdx(side == 0 ? v : -v);
+            for(int i = 0; i < occCount[idx]; i++) {
+                int[] clause = clauses.get(occ[idx][i]);
+                if(clause != null && clause.length == 2) { return true; }
+            }
+        }
+        return false;
+    }
+
+    // Eliminate the variables that can be eliminated without increasing the number of clauses,
+    // trying first the variables with the fewest resolvents.
+    private void eliminate() {
+        List<Integer> candidates = new ArrayList<Integer>();
+        long[] cost = new long[n + 1];
+        for(int v = 1; v <= n; v++) {
+            if(value[v] != 0 || eliminated[v]) { continue; }
+            int pos = occurrences(getIdx(v)), neg = occurrences(getIdx(-v));
+            // The variables that appear in no clause simply vanish in the renumbering.
+            if(pos + neg == 0 || pos + neg > MAX_OCCURRENCES) { continue; }
+            cost[v] = (long)pos * neg;
+            candidates.add(v);
+        }
+        Collections.sort(candidates, (v1, v2) -> Long.compare(cost[v1], cost[v2]));
+        for(int v: candidates) {
+            if(unsat) { return; }
+            if(value[v] == 0 && !eliminated[v]) { tryEliminate(v); }
+        }
+        subsume();
+    }
+
+    // Eliminate the variable by replacing its clauses with their resolvents on it, if that does
+    // not increase the number of clauses or literals and the resolvents are not too long.
+    private void tryEliminate(int v) {
+        int pos = occurrences(getIdx(v)), neg = occurrences(getIdx(-v));
+        if(pos + neg > MAX_OCCURRENCES) { return; }
+        int[][] posClauses = new int[pos][], negClauses = new int[neg][];
+        for(int i = 0; i < pos; i++) { posClauses[i] = clauses.get(occ[getIdx(v)][i]); }
+        for(int i = 0; i < neg; i++) { negClauses[i] = clauses.get(occ[getIdx(-v)][i]); }
+        // The resolvents may have at most as many literals in total as the clauses they replace.
+        long literals = 0;
+        for(int[] clause: posClauses) { literals += clause.length; }
+        for(int[] clause: negClauses) { literals += clause.length; }
+        List<int[]> resolvents = new ArrayList<int[]>();
+        for(int[] c1: posClauses) {
+            for(int[] c2: negClauses) {
+                int[] resolvent = resolve(c1, c2, v);
+                if(resolvent == null) { continue; }
+                literals -= resolvent.length;
+                if(resolvent.length > MAX_RESOLVENT || resolvents.size() == pos + neg || literals < 0) { return; }
+                resolvents.add(resolvent);
+            }
+        }
+        // Save the clauses of the variable for giving it a value in extendModel.
+        int[][] saved = new int[pos + neg][];
+        for(int i = 0; i < pos; i++) { saved[i] = posClauses[i]; delete(occ[getIdx(v)][i]); }
+        for(int i = 0; i < neg; i++) { saved[pos + i] = negClauses[i]; delete(occ[getIdx(-v)][i]); }
+        occCount[getIdx(v)] = occCount[getIdx(-v)] = 0;
+        eliminated[v] = true;
+        elimVars.add(v);
+        elimClauses.add(saved);
+        for(int[] resolvent: resolvents) { addClause(resolvent); }
+        propagateUnits();
+    }
+
+    // The resolvent of the clauses on the variable v, or null if the resolvent is tautological.
+    private int[] resolve(int[] c1, int[] c2, int v) {
+        int[] result = new int[c1.length + c2.length - 2];
+        int size = 0;
+        stamp++;
+        for(int literal: c1) {
+            if(literal != v) { mark[getIdx(literal)] = stamp; result[size++] = literal; }
+        }
+        for(int literal: c2) {
+            if(literal == -v || mark[getIdx(literal)] == stamp) { continue; }
+            if(mark[getIdx(-literal)] == stamp) { return null; }
+            result[size++] = literal;
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    // Renumber the variables that remain in the clauses consecutively, and return the clauses.
+    private int[][] renumber() {
+        toNew = new int[n + 1];
+        int[][] result = new int[liveCount][];
+        int loc = 0;
+        for(int[] clause: clauses) {
+            if(clause == null) { continue; }
+            int[] renamed = new int[clause.length];
+            for(int i = 0; i < clause.length; i++) {
+                int v = Math.abs(clause[i]);
+                if(toNew[v] == 0) { toNew[v] = ++newN; }
+                renamed[i] = clause[i] > 0 ? toNew[v] : -toNew[v];
+            }
+            result[loc++] = renamed;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,151 @@
+// Decide when the SAT search should give up its current decisions and restart from the top.
+// Runtimes of backtracking search are heavy-tailed, so that an unlucky choice near the top of the
+// search tree can cost much more than restarting with what has been learned and saved since.
+// The policy is told about every conflict, and answers whether the search should restart now.
+
+public abstract class RestartPolicy {
+
+    /**
+     * Record a conflict in the search and decide whether to restart.
+     * @param quality The literal block distance of the learned clause for CDCL, or the decision
+     * level of the conflict for DPLL. Smaller values mean conflicts closer to the top.
+     * @return Whether the search should restart right after this conflict.
+     */
+    public abstract boolean conflict(int quality);
+
+    /**
+     * Create a copy of this policy in its initial state, so that searches running in separate
+     * threads can each have their own copy of the same policy.
+     * @return A new policy with the same parameters.
+     */
+    public abstract RestartPolicy copy();
+
+    /**
+     * Restart after {@code unit} times the terms 1, 1, 2, 1, 1, 2, 4, 1, 1, 2, ... of the Luby
+     * sequence of conflicts. The intervals grow without limit, so the search remains complete.
+     * @param unit The number of conflicts that one term of the sequence stands for.
+     * @return The restart policy.
+     */
+    public static RestartPolicy luby(int unit) {
+        return new Luby(unit);
+    }
+
+    /**
+     * Restart after {@code first} conflicts, and then after intervals that grow by the given factor.
+     * @param first The number of conflicts before the first restart.
+     * @param factor The factor by which each interval is longer than the previous one.
+     * @return The restart policy.
+     */
+    public static RestartPolicy geometric(int first, double factor) {
+        return new Geometric(first, factor);
+    }
+
+    /**
+     * Restart when the average quality of the most recent {@code window} conflicts multiplied by
+     * {@code k} is worse than the average over the entire search, as in the Glucose solver. The
+     * minimum number of conflicts between restarts grows by ten percent after each restart, so
+     * that even the search without clause learning remains complete.
+     * @param window The number of recent conflicts whose average is compared.
+     * @param k The margin of the comparison, typically 0.8.
+     * @return The restart policy.
+     */
+    public static RestartPolicy glucose(int window, double k) {
+        return new Glucose(window, k);
+    }
+
+    // Element x (counting from zero) of the Luby sequence 1, 1, 2, 1, 1, 2, 4, 1, 1, 2, ...
+    private static long lubyTerm(int x) {
+        int size = 1, seq = 0;
+        while(size < x + 1) { seq++; size = 2 * size + 1; }
+        while(size - 1 != x) {
+            size = (size - 1) / 2;
+            seq--;
+            x = x % size;
+        }
+        return 1L << seq;
+    }
+
+    private static class Luby extends RestartPolicy {
+        private final int unit;
+        private int index = 0;
+        private long conflicts = 0;
+
+        public Luby(int unit) { this.unit = unit; }
+
+        public boolean conflict(int quality) {
+            if(++conflicts < unit * lubyTerm(index)) { return false; }
+            conflicts = 0;
+            index++;
+            return true;
+        }
+
+        public RestartPolicy copy() { return new Luby(unit); }
+        public String toString() { return "Luby(" + unit + ")"; }
+    }
+
+    private static class Geometric extends RestartPolicy {
+        private final int first;
+        private final double factor;
+        private double limit;
+        private long conflicts = 0;
+
+        public Geometric(int first, double factor) {
+            this.first = first;
+            this.factor = factor;
+            this.limit = first;
+        }
+
+        public boolean conflict(int quality) {
+            if(++conflicts < limit) { return false; }
+            conflicts = 0;
+            limit *= factor;
+            return true;
+        }
+
+        public RestartPolicy copy() { return new Geometric(first, factor); }
+        public String toString() { return "Geometric(" + first + ", " + factor + ")"; }
+    }
+
+    private static class Glucose extends RestartPolicy {
+        private final int window;
+        private final double k;
+        // The qualities of the most recent conflicts in a ring buffer, and their sum.
+        private final int[] recent;
+        private int head = 0, size = 0;
+        private long recentSum = 0;
+        // The sum of the qualities of all conflicts, and their count.
+        private long totalSum = 0, totalCount = 0;
+        // The conflicts since the previous restart, and how many are needed before the next one.
+        private long conflicts = 0;
+        private double minimum;
+
+        public Glucose(int window, double k) {
+            this.window = window;
+            this.k = k;
+            this.recent = new int[window];
+            this.minimum = window;
+        }
+
+        public boolean conflict(int quality) {
+            conflicts++;
+            totalSum += quality;
+            totalCount++;
+            if(size == window) { recentSum -= recent[head]; }
+            else { size++; }
+            recent[head] = quality;
+            head = (head + 1) % window;
+            recentSum += quality;
+            if(size < window || conflicts < minimum) { return false; }
+            if((double)recentSum / size * k <= (double)totalSum / totalCount) { return false; }
+            // Restart with an empty window of recent conflicts.
+            size = 0;
+            recentSum = 0;
+            conflicts = 0;
+            minimum *= 1.1;
+            return true;
+        }
+
+        public RestartPolicy copy() { return new Glucose(window, k); }
+        public String toString() { return "Glucose(" + window + ", " + k + ")"; }
+    }
+}
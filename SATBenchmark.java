@@ -0,0 +1,127 @@
+import java.lang.management.*;
+import java.util.*;
+
+// Measure the running time and the memory allocation rate of the SAT searches on random 3-SAT
+// problems near the satisfiability threshold, where the problems are the hardest. The allocation
+// is measured per thread, so the numbers do not include what the other threads are doing.
+
+public class SATBenchmark {
+
+    // Create a random 3-SAT problem with n variables and m clauses of three distinct variables.
+    private static int[][] random3SAT(int n, int m, Random rng) {
+        int[][] clauses = new int[m][3];
+        for(int i = 0; i < m; i++) {
+            for(int j = 0; j < 3; j++) {
+                int v;
+                boolean dup;
+                do {
+                    v = rng.nextInt(n) + 1;
+                    dup = false;
+                    for(int k = 0; k < j; k++) {
+                        if(Math.abs(clauses[i][k]) == v) { dup = true; }
+                    }
+                } while(dup);
+                clauses[i][j] = rng.nextBoolean() ? v : -v;
+            }
+        }
+        return clauses;
+    }
+
+    // The number of bytes allocated by the current thread so far.
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean())
+        .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    // Solve the given problems with the given propagation and heuristic and report the totals.
+    // If propagation is null, the problems are solved with CDCLSolver, counting its decisions.
+    private static void measure(int n, List<int[][]> problems, SATSolver.Propagation propagation,
+    SATSolver.Heuristic heuristic) {
+        long calls = 0, bytes = 0, time = 0;
+        int sat = 0;
+        for(int[][] clauses: problems) {
+            long startBytes = allocatedBytes();
+            long startTime = System.nanoTime();
+            if(propagation == null) {
+                CDCLSolver solver = new CDCLSolver(n, clauses);
+                solver.setHeuristic(heuristic);
+                if(solver.solve() != null) { sat++; }
+                calls += solver.getDecisionCount() + 1;
+            }
+            else {
+                SATSolver solver = new SATSolver(n, clauses, propagation);
+                solver.setHeuristic(heuristic);
+                if(solver.solve() != null) { sat++; }
+                calls += solver.getRecursiveCalls();
+            }
+            time += System.nanoTime() - startTime;
+            bytes += allocatedBytes() - startBytes;
+        }
+        String name = (propagation == null ? "CDCL" : propagation.toString()) + "/" + heuristic;
+        System.out.printf("%-22s %3d satisfiable, %9d calls, %7d ms, %9.1f bytes/call, %8.1f MB/s%n",
+        name, sat, calls, time / 1000000, (double)bytes / calls, bytes / (time / 1000.0));
+    }
+
+    // Solve the given problems with local search within the given number of flips per problem,
+    // checking each solution found, and report the totals.
+    private static void measureLocal(int n, List<int[][]> problems, LocalSearchSolver.Algorithm algorithm,
+    long maxFlips, long seed) {
+        long flips = 0, time = 0;
+        int sat = 0;
+        for(int[][] clauses: problems) {
+            long startTime = System.nanoTime();
+            LocalSearchSolver solver = new LocalSearchSolver(n, clauses);
+            solver.setAlgorithm(algorithm);
+            solver.setSeed(seed);
+            boolean[] solution = solver.solve(maxFlips);
+            time += System.nanoTime() - startTime;
+            flips += solver.getFlips();
+            if(solution == null) { continue; }
+            for(int[] clause: clauses) {
+                boolean ok = false;
+                for(int literal: clause) { ok = ok || solution[Math.abs(literal)] == literal > 0; }
+                if(!ok) { throw new IllegalStateException("Local search returned a false solution"); }
+            }
+            sat++;
+        }
+        System.out.printf("%-22s %3d satisfiable, %9d flips, %7d ms, %8.1f flips/ms%n",
+        algorithm, sat, flips, time / 1000000, flips / Math.max(time / 1000000.0, 1));
+    }
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 12345;
+        Random rng = new Random(seed);
+        List<int[][]> problems = new ArrayList<int[][]>();
+        for(int i = 0; i < rounds; i++) {
+            problems.add(random3SAT(n, (int)(4.26 * n), rng));
+        }
+        System.out.println("Random 3-SAT with " + n + " variables, " + rounds + " problems.");
+        // Run once to warm up the JIT compiler before measuring.
+        for(int i = 0; i < 2; i++) {
+            for(SATSolver.Heuristic heuristic: SATSolver.Heuristic.values()) {
+                measure(n, problems, SATSolver.Propagation.COUNTING, heuristic);
+                measure(n, problems, SATSolver.Propagation.WATCHED, heuristic);
+                measure(n, problems, null, heuristic);
+            }
+        }
+        // Local search finds the solutions of the satisfiable problems, but it can never tell
+        // that the others have none, so each of them uses up its whole budget of flips.
+        for(LocalSearchSolver.Algorithm algorithm: LocalSearchSolver.Algorithm.values()) {
+            measureLocal(n, problems, algorithm, 1000L * n, seed);
+        }
+        // Satisfiable problems a hundred times larger, below the threshold, are still easy for
+        // local search, but far beyond the reach of the complete searches.
+        int large = 100 * n;
+        List<int[][]> largeProblems = new ArrayList<int[][]>();
+        for(int i = 0; i < Math.min(rounds, 10); i++) {
+            largeProblems.add(random3SAT(large, (int)(4.0 * large), rng));
+        }
+        System.out.println("Random 3-SAT with " + large + " variables and ratio 4.0, "
+        + largeProblems.size() + " problems.");
+        for(LocalSearchSolver.Algorithm algorithm: LocalSearchSolver.Algorithm.values()) {
+            measureLocal(large, largeProblems, algorithm, 10000L * large, seed);
+        }
+    }
+}
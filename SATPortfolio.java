@@ -0,0 +1,218 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+// Solve a SAT problem by running several differently configured searches for the same clauses
+// in parallel in a ForkJoinPool. The answer of whichever search finishes first is returned, after
+// which all the other searches are asked to stop. Since both DPLL and CDCL are complete, the first
+// answer is correct whether it is a solution or a proof that there is none.
+
+public class SATPortfolio {
+
+    /**
+     * One configuration of the search to run as part of the portfolio.
+     */
+    public static class Configuration {
+        private final String name;
+        private final boolean learning;
+        private final SATSolver.Propagation propagation;
+        private final SATSolver.Polarity polarity;
+        private final long seed;
+        private final RestartPolicy restartPolicy;
+
+        /**
+         * Create a new search configuration.
+         * @param name The name used to report this configuration.
+         * @param learning Whether to use the CDCL solver instead of the DPLL solver.
+         * @param propagation The unit propagation of the DPLL solver, ignored for CDCL.
+         * @param polarity The way of choosing which branch to try first.
+         * @param seed The seed for random tie-breaking of literal priorities, or zero for none.
+         */
+        public Configuration(String name, boolean learning, SATSolver.Propagation propagation,
+        SATSolver.Polarity polarity, long seed) {
+            this(name, learning, propagation, polarity, seed, null);
+        }
+
+        /**
+         * Create a new search configuration that restarts with the given policy and phase saving.
+         * @param name The name used to report this configuration.
+         * @param learning Whether to use the CDCL solver instead of the DPLL solver.
+         * @param propagation The unit propagation of the DPLL solver, ignored for CDCL.
+         * @param polarity The way of choosing which branch to try first.
+         * @param seed The seed for random tie-breaking of literal priorities, or zero for none.
+         * @param restartPolicy The restart policy, or {@code null} for no restarts.
+         */
+        public Configuration(String name, boolean learning, SATSolver.Propagation propagation,
+        SATSolver.Polarity polarity, long seed, RestartPolicy restartPolicy) {
+            this.name = name;
+            this.learning = learning;
+            this.propagation = propagation;
+            this.polarity = polarity;
+            this.seed = seed;
+            this.restartPolicy = restartPolicy;
+        }
+
+        public String getName() { return name; }
+        public boolean isLearning() { return learning; }
+        public SATSolver.Propagation getPropagation() { return propagation; }
+        public SATSolver.Polarity getPolarity() { return polarity; }
+        public long getSeed() { return seed; }
+        public RestartPolicy getRestartPolicy() { return restartPolicy; }
+        public String toString() { return name; }
+    }
+
+    // The restart policies used in the default configurations, the first one for no restarts.
+    private static final RestartPolicy[] RESTARTS = {
+        null, RestartPolicy.luby(100), RestartPolicy.glucose(50, 0.8), RestartPolicy.geometric(100, 1.5)
+    };
+
+    /**
+     * Create the given number of different search configurations, alternating between the
+     * solvers, the polarity policies and the restart policies, with each configuration after
+     * the first few using its own random seed for tie-breaking.
+     * @param count The number of configurations to create.
+     * @return The list of search configurations.
+     */
+    public static List<Configuration> defaultConfigurations(int count) {
+        SATSolver.Polarity[] polarities = SATSolver.Polarity.values();
+        List<Configuration> result = new ArrayList<Configuration>();
+        for(int i = 0; i < count; i++) {
+            SATSolver.Polarity polarity = polarities[(i / 3) % polarities.length];
+            long seed = i < 3 * polarities.length ? 0 : i;
+            RestartPolicy restarts = RESTARTS[(i / 2) % RESTARTS.length];
+            String suffix = "-" + polarity + "-" + seed + (restarts == null ? "" : "-" + restarts);
+            switch(i % 3) {
+                case 0:
+                    result.add(new Configuration("CDCL" + suffix, true,
+                    SATSolver.Propagation.WATCHED, polarity, seed, restarts));
+                    break;
+                case 1:
+                    result.add(new Configuration("DPLL-WATCHED" + suffix, false,
+                    SATSolver.Propagation.WATCHED, polarity, seed, restarts));
+                    break;
+                default:
+                    result.add(new Configuration("DPLL-COUNTING" + suffix, false,
+                    SATSolver.Propagation.COUNTING, polarity, seed, restarts));
+            }
+        }
+        return result;
+    }
+
+    // The problem to solve.
+    private final int n;
+    private final int[][] clauses;
+    // The configurations of the searches to run in parallel.
+    private final List<Configuration> configurations;
+    // The searches of the current call to solve, one for each configuration.
+    private List<Search> searches;
+    // The search that finished first, or null if none has finished yet.
+    private final AtomicReference<Search> winner = new AtomicReference<Search>();
+    // Set once some search has finished, so that the searches starting later need not bother.
+    private volatile boolean finished = false;
+
+    /**
+     * Create a portfolio for the set of CNF clauses for variables 1, ..., {@code n}.
+     * @param n The number of propositional variables in the system.
+     * @param clauses The array of clauses, in the same format as for {@code SATSolver.solveDPLL}.
+     * @param configurations The search configurations to run in parallel.
+     */
+    public SATPortfolio(int n, int[][] clauses, List<Configuration> configurations) {
+        this.n = n;
+        this.clauses = clauses;
+        this.configurations = new ArrayList<Configuration>(configurations);
+    }
+
+    /**
+     * Solve the clauses in the common ForkJoinPool.
+     * @return Solution array of {@code n + 1} elements giving the truth value of each variable,
+     * or {@code null} if there is no solution to the clauses.
+     */
+    public boolean[] solve() {
+        return solve(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Solve the clauses by running all the configurations in the given ForkJoinPool.
+     * @param pool The pool whose worker threads run the searches.
+     * @return Solution array of {@code n + 1} elements giving the truth value of each variable,
+     * or {@code null} if there is no solution to the clauses.
+     */
+    public boolean[] solve(ForkJoinPool pool) {
+        finished = false;
+        winner.set(null);
+        searches = new ArrayList<Search>();
+        for(Configuration conf: configurations) {
+            searches.add(new Search(conf));
+        }
+        pool.invoke(new RecursiveAction() {
+            public void compute() { invokeAll(searches); }
+        });
+        Search first = winner.get();
+        return first == null ? null : first.solution;
+    }
+
+    /**
+     * Find out which configuration answered first in the previous call to {@code solve}.
+     * @return The winning configuration, or {@code null} if no search has finished.
+     */
+    public Configuration getWinner() {
+        Search first = winner.get();
+        return first == null ? null : first.conf;
+    }
+
+    // Ask all the searches to stop, once some search has found the answer.
+    private void cancelAll() {
+        finished = true;
+        for(Search search: searches) { search.stop(); }
+    }
+
+    // The task that runs one configuration of the search.
+    private class Search extends RecursiveAction {
+        private final Configuration conf;
+        private volatile SATSolver dpll;
+        private volatile CDCLSolver cdcl;
+        private boolean[] solution;
+
+        public Search(Configuration conf) {
+            this.conf = conf;
+        }
+
+        // The important method of every ForkJoinTask.
+        public void compute() {
+            boolean stopped;
+            if(conf.isLearning()) {
+                cdcl = new CDCLSolver(n, clauses);
+                cdcl.setPolarity(conf.getPolarity());
+                if(conf.getSeed() != 0) { cdcl.setSeed(conf.getSeed()); }
+                if(conf.getRestartPolicy() != null) {
+                    cdcl.setRestartPolicy(conf.getRestartPolicy());
+                    cdcl.setPhaseSaving(true);
+                }
+                // Some other search may have finished while this solver was being created.
+                if(finished) { return; }
+                solution = cdcl.solve();
+                stopped = cdcl.isCancelled();
+            }
+            else {
+                dpll = new SATSolver(n, clauses, conf.getPropagation());
+                dpll.setPolarity(conf.getPolarity());
+                dpll.setSeed(conf.getSeed());
+                if(conf.getRestartPolicy() != null) {
+                    dpll.setRestartPolicy(conf.getRestartPolicy());
+                    dpll.setPhaseSaving(true);
+                }
+                if(finished) { return; }
+                solution = dpll.solve();
+                stopped = dpll.isCancelled();
+            }
+            // The first search to complete without being cancelled is the winner.
+            if(!stopped && winner.compareAndSet(null, this)) { cancelAll(); }
+        }
+
+        // Ask the solver of this search to stop, if it has been created.
+        public void stop() {
+            if(dpll != null) { dpll.cancel(); }
+            if(cdcl != null) { cdcl.cancel(); }
+        }
+    }
+}
@@ -3,11 +3,34 @@ import java.io.*;
 
 public class SATSolver {
     
-    // Some methods for measuring the effectiveness of the algorithm.
-    private static int callCount = 0;
-    public static int getCallCount() { return callCount; }
-    private static int pureLiteralCount = 0;
-    public static int getPureLiteralCount() { return pureLiteralCount; }
+    // Some methods for measuring the effectiveness of the algorithm. These static counters tell
+    // about the most recent search done through the static methods, whereas the statistics of each
+    // solver instance are available from that instance.
+    private static volatile int lastCallCount = 0;
+    public static int getCallCount() { return lastCallCount; }
+    private static volatile int lastPureLiteralCount = 0;
+    public static int getPureLiteralCount() { return lastPureLiteralCount; }
+    private static volatile int lastRestartCount = 0;
+    public static int getRestartCount() { return lastRestartCount; }
+    
+    // The statistics of the search done by this solver instance.
+    private int callCount = 0;
+    public int getRecursiveCalls() { return callCount; }
+    private int pureLiteralCount = 0;
+    public int getPureLiteralEliminations() { return pureLiteralCount; }
+    private int conflictCount = 0;
+    public int getConflicts() { return conflictCount; }
+    private int restartCount = 0;
+    public int getRestarts() { return restartCount; }
+    private int nogoodsLearned = 0;
+    public int getLearnedNogoods() { return nogoodsLearned; }
+    private int nogoodsDeleted = 0;
+    public int getDeletedNogoods() { return nogoodsDeleted; }
+    public int getRetainedNogoods() { return nogoodCount; }
+    private long decisionCount = 0;
+    public long getDecisions() { return decisionCount; }
+    private long propagationCount = 0;
+    public long getPropagations() { return propagationCount; }
     
     // Calculate the index in the solution array where literal is stored.
     private static int getIdx(int literal) {
@@ -21,33 +44,39 @@ public class SATSolver {
      * @return The solution vector that was found, or null if there is no solution.
      */
     public static boolean[] readDimacsProblem(String filename) throws IOException {
-        Scanner s = new Scanner(new File(filename));
-        int[][] clauses = null;
-        int vars = 0, cloc = 0;
-        while(s.hasNextLine()) {
-            String line = s.nextLine();
-            if(line.charAt(0) == 'c') { continue; }
-            else if(line.charAt(0) == 'p') {
-                String[] info = line.split("\\s+");
-                int c = Integer.parseInt(info[3]);
-                clauses = new int[c][];
-            }
-            else {
-                String[] info = line.split("\\s+");
-                int[] clause = new int[info.length - 1];
-                for(int loc = 0; loc < info.length - 1; loc++) {
-                     clause[loc] = Integer.parseInt(info[loc]);
-                     if(Math.abs(clause[loc]) > vars) { vars = Math.abs(clause[loc]); }
+        return readDimacsProblem(filename, null);
+    }
+    
+    /**
+     * Read a SAT problem from a standard DIMACS problem file, and if it has no solution,
+     * write the binary DRAT proof of that to the given file to be verified with a proof checker.
+     * @param filename The name of the file.
+     * @param proofFilename The name of the proof file, or {@code null} for no proof.
+     * @return The solution vector that was found, or null if there is no solution.
+     */
+    public static boolean[] readDimacsProblem(String filename, String proofFilename) throws IOException {
+        DimacsParser parser = DimacsParser.parse(filename);
+        ClauseStore store = new ClauseStore(parser.getVariableCount(), parser.getLiterals(),
+        parser.getOffsets(), parser.getClauseCount());
+        System.out.printf("Read problem with %d variables and %d clauses in %d ms (%.1f MB/s).%n",
+        store.getVariableCount(), store.size(), parser.getParseTime(), parser.getThroughput());
+        long startTime = System.currentTimeMillis();
+        SATSolver solver = new SATSolver(store, Propagation.COUNTING);
+        boolean[] solution;
+        if(proofFilename == null) { solution = solver.solve(); }
+        else {
+            try(DratWriter proof = new DratWriter(proofFilename)) {
+                solver.setProof(proof);
+                solution = solver.solve();
+                if(solution == null) {
+                    System.out.println("Wrote proof of " + proof.getAdditions() + " additions and "
+                    + proof.getDeletions() + " deletions (" + proof.getBytes() + " bytes).");
                 }
-                clauses[cloc++] = clause;
             }
         }
-        System.out.println("Read problem with " + vars + " variables and " + cloc + " clauses."); 
-        long startTime = System.currentTimeMillis();
-        boolean[] solution = SATSolver.solveDPLL(vars, clauses);
         long endTime = System.currentTimeMillis();
         System.out.println("Solved in " + (endTime - startTime) + " ms with "
-        + SATSolver.getCallCount() + " recursive calls.");
+        + solver.getRecursiveCalls() + " recursive calls.");
         return solution;
     }
     
@@ -61,90 +90,739 @@ public class SATSolver {
      * or {@code null} if there is no solution to the clauses.
      */
     public static boolean[] solveDPLL (int n, int[][] clauses) {
-        // Initialize the counters.
-        callCount = pureLiteralCount = 0;
+        return solveDPLL(n, clauses, Propagation.COUNTING);
+    }
+    
+    /**
+     * The ways that the DPLL search can find out which clauses have become unit clauses.
+     */
+    public enum Propagation {
+        /** Keep count of possible literals and active clauses, updating them at every assignment. */
+        COUNTING,
+        /** Watch two literals in each clause, examining only the clauses where a watched literal
+         * became false. Pure literals are not detected, and the clause counts used to order the
+         * literals stay at their initial values. */
+        WATCHED
+    }
+    
+    /**
+     * The ways to order the literals to branch on.
+     */
+    public enum Heuristic {
+        /** Branch first on the literal that appears in the most active clauses. */
+        CLAUSE_COUNT,
+        /** Branch first on the variable most active in recent conflicts, decaying all activities
+         * periodically as in Chaff. */
+        VSIDS,
+        /** Branch first on the variable most active in recent conflicts, growing the bump
+         * exponentially as in MiniSat. */
+        EVSIDS
+    }
+    
+    /*
+     * Create the queue of literals for the given heuristic, containing all the literals. The
+     * activity heuristics start from the clause counts of each variable, and the seed, if nonzero,
+     * breaks the ties randomly. The clause count queue is built at once in linear time.
+     */
+    static LiteralQueue createQueue(Heuristic heuristic, int[] clauseCount, int n, long seed) {
+        Random rng = seed == 0 ? null : new Random(seed);
+        if(heuristic == Heuristic.CLAUSE_COUNT) {
+            return new DaryIntHeap(clauseCount, n, rng);
+        }
+        ActivityHeap heap = heuristic == Heuristic.VSIDS ? ActivityHeap.vsids(n) : ActivityHeap.evsids(n);
+        for(int v = 1; v <= n; v++) {
+            double tie = rng == null ? 0 : rng.nextDouble();
+            heap.setActivity(v, clauseCount[getIdx(v)] + clauseCount[getIdx(-v)] + tie);
+        }
+        for(int literal = 1; literal <= n; literal++) {
+            heap.offer(literal);
+            heap.offer(-literal);
+        }
+        return heap;
+    }
+    
+    /**
+     * The ways to choose which truth value to try first for the chosen branching literal.
+     */
+    public enum Polarity {
+        /** Try first the literal that appears in more active clauses than its negation. */
+        CLAUSE_COUNT,
+        /** Try first the literal that appears in fewer active clauses than its negation. */
+        REVERSE_COUNT,
+        /** Always try first to make the variable true. */
+        POSITIVE,
+        /** Always try first to make the variable false. */
+        NEGATIVE
+    }
+    
+    /**
+     * The possible outcomes of a search.
+     */
+    public enum Result {
+        /** A solution was found. */
+        SATISFIABLE,
+        /** The clauses were shown to have no solution. */
+        UNSATISFIABLE,
+        /** The search was cancelled or ran out of its budget before finding either answer. */
+        UNKNOWN
+    }
+    
+    /**
+     * A listener that is told about the progress of a search at regular intervals.
+     */
+    public interface ProgressListener {
+        /**
+         * Report the progress of the search.
+         * @param decisions The number of decisions made so far.
+         * @param propagationsPerSecond The number of literals made true per second since the
+         * previous report.
+         * @param depth The current decision level.
+         * @param trailSize The number of literals currently assigned.
+         */
+        void progress(long decisions, double propagationsPerSecond, int depth, int trailSize);
+    }
+    
+    /**
+     * Solve the set of CNF clauses for variables 1, ..., {@code n} using the DPLL algorithm
+     * with the given way of unit propagation.
+     * @param n The number of propositional variables in the system.
+     * @param clauses The array of clauses, in the same format as for {@code solveDPLL(int, int[][])}.
+     * @param propagation The unit propagation scheme to use in the search.
+     * @return Solution array of {@code n + 1} elements giving the truth value of each variable,
+     * or {@code null} if there is no solution to the clauses.
+     */
+    public static boolean[] solveDPLL (int n, int[][] clauses, Propagation propagation) {
+        SATSolver solver = new SATSolver(n, clauses, propagation);
+        boolean[] solution = solver.solve();
+        lastCallCount = solver.callCount;
+        lastPureLiteralCount = solver.pureLiteralCount;
+        lastRestartCount = solver.restartCount;
+        return solution;
+    }
+    
+    // The problem given to this solver instance, either as the original clauses or already
+    // in the compressed form that the search uses.
+    private final int n;
+    private final int[][] problem;
+    private ClauseStore store;
+    
+    /**
+     * Create a solver for the set of CNF clauses for variables 1, ..., {@code n}. Each solver
+     * instance keeps its own search state, so that different instances can solve their problems
+     * concurrently in separate threads. The clauses are not examined until {@code solve} is called.
+     * @param n The number of propositional variables in the system.
+     * @param clauses The array of clauses, in the same format as for {@code solveDPLL(int, int[][])}.
+     */
+    public SATSolver(int n, int[][] clauses) {
+        this(n, clauses, Propagation.COUNTING);
+    }
+    
+    /**
+     * Create a solver for the set of CNF clauses for variables 1, ..., {@code n} that uses
+     * the given way of unit propagation.
+     * @param n The number of propositional variables in the system.
+     * @param clauses The array of clauses, in the same format as for {@code solveDPLL(int, int[][])}.
+     * @param propagation The unit propagation scheme to use in the search.
+     */
+    public SATSolver(int n, int[][] clauses, Propagation propagation) {
+        this.n = n;
+        this.problem = clauses;
+        this.propagation = propagation;
+    }
+    
+    /**
+     * Create a solver for the clauses in the given clause store that uses the given way of unit
+     * propagation. The store is shared, not copied, so that the same large problem can be given
+     * to several solvers without converting it to separate clause arrays.
+     * @param store The clauses and the number of variables of the problem.
+     * @param propagation The unit propagation scheme to use in the search.
+     */
+    public SATSolver(ClauseStore store, Propagation propagation) {
+        this.n = store.getVariableCount();
+        this.problem = null;
+        this.store = store;
+        this.propagation = propagation;
+    }
+    
+    /**
+     * Set the way of choosing which branch to try first at each decision.
+     * @param polarity The polarity policy, {@code CLAUSE_COUNT} by default.
+     */
+    public void setPolarity(Polarity polarity) { this.polarity = polarity; }
+    
+    /**
+     * Set the seed used to randomly break ties between literals of equal priority.
+     * @param seed The seed of the random tie-breaking, or zero for no random tie-breaking.
+     */
+    public void setSeed(long seed) { this.seed = seed; }
+    
+    /**
+     * Set the heuristic that orders the literals to branch on.
+     * @param heuristic The branching heuristic, {@code CLAUSE_COUNT} by default.
+     */
+    public void setHeuristic(Heuristic heuristic) { this.heuristic = heuristic; }
+    
+    /**
+     * Set the policy that decides when the search restarts from the top. Each solve uses its
+     * own fresh copy of the policy.
+     * @param restartPolicy The restart policy, or {@code null} for no restarts, which is the default.
+     */
+    public void setRestartPolicy(RestartPolicy restartPolicy) { this.restartPolicy = restartPolicy; }
+    
+    /**
+     * Set whether the branches are tried first in the polarity that each variable had when it was
+     * last assigned, so that the progress made before a restart is not forgotten.
+     * @param phaseSaving Whether to use phase saving, false by default.
+     */
+    public void setPhaseSaving(boolean phaseSaving) { this.phaseSaving = phaseSaving; }
+    
+    /**
+     * Set the longest nogood to record. Whenever the first branch of some decision fails, the
+     * search records the nogood clause that says that the decision cannot be true together with
+     * the decisions above it that are still in their first branch. These nogoods cannot prune the
+     * path that created them, so they are added to the clauses at the next restart, after which
+     * they keep the search from walking again into the same dead ends. Recording nogoods is
+     * therefore useful only together with a restart policy.
+     * @param maxLength The longest nogood to record, or zero to record none, which is the default.
+     */
+    public void setNogoodRecording(int maxLength) { this.nogoodLimit = maxLength; }
+    
+    /**
+     * Set how the database of recorded nogoods is reduced. At the first restart after every
+     * {@code interval} conflicts, the nogoods whose literal block distance is at most two are
+     * kept, and of the others, the given fraction of those with the lowest literal block distance
+     * and then the highest activity in recent conflicts is kept. The nogood storage is compacted.
+     * @param interval The number of conflicts between reductions, 2000 by default.
+     * @param keepRatio The fraction of the other nogoods to keep, 0.5 by default.
+     */
+    public void setNogoodReduction(int interval, double keepRatio) {
+        this.reduceInterval = interval;
+        this.keepRatio = keepRatio;
+    }
+    
+    /**
+     * Set whether the clauses are simplified with a {@code Preprocessor} before the search.
+     * The search then works on the simplified clauses, and its solution is mapped back to
+     * the original variables.
+     * @param preprocessing Whether to preprocess the clauses, false by default.
+     */
+    public void setPreprocessing(boolean preprocessing) { this.preprocessing = preprocessing; }
+    
+    /**
+     * Returns the preprocessor used in the most recent call to {@code solve}, to report
+     * how much it simplified the clauses.
+     * @return The preprocessor, or {@code null} if the clauses were not preprocessed.
+     */
+    public Preprocessor getPreprocessor() { return preprocessor; }
+    
+    /**
+     * Set the writer of a DRAT proof of unsatisfiability for the searches of this solver. When
+     * {@code solve} returns {@code null} without being cancelled, the proof ends in the empty
+     * clause, so that the answer can be verified with an independent proof checker. Each refuted
+     * branch adds the clause that negates the decisions on its path, each pure literal adds the
+     * clause that makes it true under those decisions, and the nogoods are added and deleted with
+     * the database. To keep every step checkable, the pure literals are left alone in the searches
+     * that also record nogoods, and no proof is written for the preprocessed clauses, since those
+     * use variables of their own. The solver flushes the writer but leaves closing it to the caller.
+     * @param proof The proof writer, or {@code null} to write no proof, which is the default.
+     */
+    public void setProof(DratWriter proof) { this.proof = proof; }
+    
+    /**
+     * Set the number of conflicts after which each search gives up with the result {@code UNKNOWN}.
+     * @param conflicts The number of conflicts allowed, or zero for no limit, which is the default.
+     */
+    public void setConflictBudget(long conflicts) { this.conflictBudget = conflicts; }
+    
+    /**
+     * Set the number of decisions after which each search gives up with the result {@code UNKNOWN}.
+     * @param decisions The number of decisions allowed, or zero for no limit, which is the default.
+     */
+    public void setDecisionBudget(long decisions) { this.decisionBudget = decisions; }
+    
+    /**
+     * Set the time after which each search gives up with the result {@code UNKNOWN}. The clock is
+     * read only every 64 recursive calls, so the search may overrun its time by
+     * the little that those calls take.
+     * @param millis The time allowed for the search in milliseconds, or zero for no limit,
+     * which is the default.
+     */
+    public void setTimeBudget(long millis) { this.timeBudget = millis; }
+    
+    /**
+     * Set the listener that is told about the progress of each search at the given interval.
+     * @param listener The listener, or {@code null} for none, which is the default.
+     * @param intervalMillis The time between two reports in milliseconds.
+     */
+    public void setProgressListener(ProgressListener listener, long intervalMillis) {
+        this.listener = listener;
+        this.reportInterval = intervalMillis;
+    }
+    
+    /**
+     * Returns the outcome of the most recent call to {@code solve}, which tells apart the two
+     * different reasons that it could have returned {@code null}.
+     * @return The result of the most recent search, or {@code UNKNOWN} if there has been none.
+     */
+    public Result getResult() { return result; }
+    
+    /**
+     * Ask this solver to stop its search as soon as possible. This method can be called from any
+     * thread, after which {@code solve} returns {@code null}, {@code getResult} returns {@code UNKNOWN}
+     * and {@code isCancelled} returns true.
+     */
+    public void cancel() {
+        cancelled = true;
+        SATSolver s = inner;
+        if(s != null) { s.cancel(); }
+    }
+    
+    /**
+     * Check whether the search of this solver was cancelled.
+     * @return Whether {@code cancel} has been called for this solver.
+     */
+    public boolean isCancelled() { return cancelled; }
+    
+    /**
+     * Solve the clauses given to this solver using the DPLL algorithm.
+     * @return Solution array of {@code n + 1} elements giving the truth value of each variable,
+     * or {@code null} if there is no solution to the clauses.
+     */
+    public boolean[] solve() {
+        if(preprocessing) { return solvePreprocessed(); }
+        if(!initialize()) {
+            // The original unit clauses contradict each other, which unit propagation sees at once.
+            if(proof != null) { proof.add(); proof.flush(); }
+            result = Result.UNSATISFIABLE;
+            return null;
+        }
+        proofOut = proof;
+        lastReport = System.nanoTime();
+        deadline = lastReport + timeBudget * 1000000;
+        lastPropagations = 0;
+        outOfBudget = false;
+        // Solve the system, starting over whenever the restart policy says so.
+        int result;
+        while((result = DPLL(1)) > -1 && restartPending) {
+            restartPending = false;
+            restartCount++;
+            if(!restart()) {
+                if(proofOut != null) { proofOut.add(); }
+                break;
+            }
+        }
+        if(proofOut != null) { proofOut.flush(); proofOut = null; }
+        if(result > -1) {
+            this.result = cancelled || outOfBudget ? Result.UNKNOWN : Result.UNSATISFIABLE;
+            return null;
+        }
+        this.result = Result.SATISFIABLE;
+        // Convert the integer solution array to truth values to return to caller.
+        boolean[] solutionB = new boolean[n + 1];
+        for(int literal = 1; literal <= n; literal++) {
+            solutionB[literal] = solution[getIdx(literal)] > 0;
+        }
+        return solutionB;
+    }
+    
+    // Simplify the clauses with a preprocessor and solve the simplified clauses with another
+    // solver instance that has the same settings as this one.
+    private boolean[] solvePreprocessed() {
+        int[][] clauses = problem;
+        if(clauses == null) {
+            clauses = new int[store.size()][];
+            for(int c = 0; c < store.size(); c++) {
+                clauses[c] = Arrays.copyOfRange(store.getLiterals(), store.getStarts()[c], store.getStarts()[c + 1]);
+            }
+        }
+        callCount = pureLiteralCount = conflictCount = restartCount = 0;
+        decisionCount = propagationCount = 0;
+        preprocessor = new Preprocessor(n, clauses);
+        int[][] reduced = preprocessor.preprocess();
+        if(reduced == null) { result = Result.UNSATISFIABLE; return null; }
+        SATSolver solver = new SATSolver(preprocessor.getVariableCount(), reduced, propagation);
+        solver.polarity = polarity;
+        solver.seed = seed;
+        solver.heuristic = heuristic;
+        solver.restartPolicy = restartPolicy;
+        solver.phaseSaving = phaseSaving;
+        solver.nogoodLimit = nogoodLimit;
+        solver.reduceInterval = reduceInterval;
+        solver.keepRatio = keepRatio;
+        solver.conflictBudget = conflictBudget;
+        solver.decisionBudget = decisionBudget;
+        solver.timeBudget = timeBudget;
+        solver.listener = listener;
+        solver.reportInterval = reportInterval;
+        inner = solver;
+        if(cancelled) { solver.cancel(); }
+        boolean[] solution = solver.solve();
+        inner = null;
+        callCount = solver.callCount;
+        pureLiteralCount = solver.pureLiteralCount;
+        conflictCount = solver.conflictCount;
+        restartCount = solver.restartCount;
+        nogoodsLearned = solver.nogoodsLearned;
+        nogoodsDeleted = solver.nogoodsDeleted;
+        decisionCount = solver.decisionCount;
+        propagationCount = solver.propagationCount;
+        result = solver.result;
+        return solution == null ? null : preprocessor.extendModel(solution);
+    }
+    
+    /**
+     * Split the search space of the clauses given to this solver into cubes, that is, partial
+     * assignments of literals that together cover every possible solution. The variable to
+     * split on at each of the first {@code depth} levels is chosen by looking ahead how much
+     * propagation each of its literals would cause. Branches that fail already in propagation
+     * produce no cubes, so that an empty list means that there is no solution.
+     * @param depth The number of decision levels to split.
+     * @return The list of cubes, each cube given as the array of its decision literals.
+     */
+    public List<int[]> generateCubes(int depth) {
+        List<int[]> cubes = new ArrayList<int[]>();
+        if(initialize()) { cube(1, depth, cubes); }
+        return cubes;
+    }
+    
+    // How many of the highest priority variables are examined in lookahead at each level.
+    private static final int LOOKAHEAD_CANDIDATES = 32;
+    
+    /*
+     * Recursively split the search tree at levels up to depth, adding the decisions made on
+     * each path that survives the propagation at the bottom level to the list of cubes.
+     */
+    private void cube(int level, int depth, List<int[]> cubes) {
+        push(MARK);
+        callCount++;
+        if(propagate(level)) {
+            int literal = level > depth ? 0 : lookahead(level);
+            if(literal == 0) {
+                cubes.add(Arrays.copyOfRange(decisions, 1, level));
+            }
+            else {
+                for(int i = 0; i < 2; i++) {
+                    push(MARK);
+                    decisions[level] = literal;
+                    if(propagation == Propagation.WATCHED) { makeLiteralTrueWatched(level, literal); }
+                    else { makeLiteralTrue(level, literal); }
+                    cube(level + 1, depth, cubes);
+                    unrollStack();
+                    literal = -literal;
+                }
+            }
+        }
+        unrollStack();
+    }
+    
+    /*
+     * Look ahead how much propagation making each literal of the most promising unassigned
+     * variables true causes, measured by the number of actions placed in the stack. Returns
+     * the literal to try first for the variable that maximizes the product of the effects of
+     * its two literals, or 0 if no unassigned variables remain.
+     */
+    private int lookahead(int level) {
+        // Collect the candidate variables from the queue, and then put everything back.
+        List<Integer> polled = new ArrayList<Integer>();
+        List<Integer> candidates = new ArrayList<Integer>();
+        while(candidates.size() < LOOKAHEAD_CANDIDATES && literalQueue.getSize() > 0) {
+            int literal = literalQueue.poll();
+            polled.add(literal);
+            if(solution[getIdx(literal)] == 0 && !candidates.contains(Math.abs(literal))) {
+                candidates.add(Math.abs(literal));
+            }
+        }
+        for(int literal: polled) { literalQueue.offer(literal); }
+        int best = 0;
+        long bestScore = -1;
+        for(int v: candidates) {
+            long pos = lookaheadScore(level, v);
+            long neg = lookaheadScore(level, -v);
+            // A literal that fails in propagation leaves only one branch to split.
+            if(pos < 0) { return -v; }
+            if(neg < 0) { return v; }
+            long score = (pos + 1) * (neg + 1);
+            if(score > bestScore) {
+                bestScore = score;
+                best = pos >= neg ? v : -v;
+            }
+        }
+        return best;
+    }
+    
+    // The number of actions caused by making the literal true, or -1 if that creates a contradiction.
+    private long lookaheadScore(int level, int literal) {
+        push(MARK);
+        int before = stackSize;
+        if(propagation == Propagation.WATCHED) { makeLiteralTrueWatched(level, literal); }
+        else { makeLiteralTrue(level, literal); }
+        long score = propagate(level) ? (stackSize - before) / 2 : -1;
+        unrollStack();
+        return score;
+    }
+    
+    /*
+     * Initialize the search state from the clauses given to this solver. Returns false if the
+     * clauses are found to have no solution already during the initialization.
+     */
+    private boolean initialize() {
+        boolean watched = propagation == Propagation.WATCHED;
+        // Initialize the counters and the restarts.
+        callCount = pureLiteralCount = conflictCount = restartCount = 0;
+        nogoodsLearned = nogoodsDeleted = nogoodCount = 0;
+        decisionCount = propagationCount = 0;
+        trailSize = 0;
+        pendingCount = pendingSize = lastReduce = 0;
+        nogoodInc = 1;
+        restarts = restartPolicy == null ? null : restartPolicy.copy();
+        restartPending = false;
+        phase = new int[n + 1];
         // Initialize the solution array and the active set data structures (see below).
         solution = new int[2 * n];
-        active.clear();
-        activeUnits.clear();
-        inClauses = new ArrayList<List<Integer>>();
-        for(int i = 0; i < 2 * n; i++) {
-            inClauses.add(new ArrayList<Integer>());
-        }
+        stack = new int[1024];
+        stackSize = 0;
+        pureLiterals = new int[64];
+        pureHead = pureSize = 0;
+        // The proof is written only during the search, not during the initialization or the cubing.
+        proofOut = null;
+        pureAllowed = proof == null || nogoodLimit == 0;
+        proofLits = new int[proof == null ? 0 : n + 2];
+        proofPure = new int[proof == null ? 0 : 16];
+        proofPureSize = 0;
+        // Convert the clauses to the compressed form once, the first time they are needed.
+        if(store == null) { store = new ClauseStore(n, problem); }
+        m = store.size();
+        // The watched literals are kept in front, so the watched mode needs its own copy. So do
+        // the searches that record nogoods, which are stored after the original clauses.
+        boolean nogoods = nogoodLimit > 0;
+        lits = watched || nogoods ? store.getLiterals().clone() : store.getLiterals();
+        start = nogoods ? store.getStarts().clone() : store.getStarts();
+        occStart = store.getOccurrenceStarts();
+        occ = store.getOccurrences();
+        active = new IntSparseSet(m);
+        activeUnits = new IntSparseSet(m);
         clauseCount = new int[2 * n];
-        possible = new int[2 * clauses.length];
-        // Preprocess the clauses.
-        cloc = 0;
-        SATSolver.clauses = new int[clauses.length][];
-        for(int c = 0; c < clauses.length; c++) {
-            // Ignore nonexistent and empty clauses.
-            if(clauses[c] == null || clauses[c].length == 0) { continue; }
-            SATSolver.clauses[cloc] = clauses[c];
+        possible = new int[m];
+        nogoodOcc = new int[2 * n][];
+        nogoodOccCount = new int[2 * n];
+        Arrays.fill(nogoodOcc, EMPTY);
+        nogoodLBD = new int[nogoods ? 64 : 0];
+        nogoodActivity = new double[nogoods ? 64 : 0];
+        pendingLits = new int[nogoods ? 256 : 0];
+        pendingStart = new int[nogoods ? 64 : 1];
+        if(watched) {
+            watches = new int[2 * n][];
+            watchCount = new int[2 * n];
+            for(int i = 0; i < 2 * n; i++) { watches[i] = new int[4]; }
+            propQueue = new int[n];
+            qhead = qtail = 0;
+        }
+        // The clause store has already left out the empty clauses and checked the literals.
+        for(int c = 0; c < m; c++) {
             // Initially, any one of the literals could be made true.
-            possible[cloc] = SATSolver.clauses[cloc].length;
+            possible[c] = start[c + 1] - start[c];
             // Add the clause to the approriate set of active clauses.
-            if(possible[cloc] == 1) { 
-                activeUnits.add(cloc);
+            if(possible[c] == 1) { 
+                activeUnits.add(c);
             } 
-            else { 
-                active.add(cloc);
+            else if(watched) {
+                watch(getIdx(lits[start[c]]), c);
+                watch(getIdx(lits[start[c] + 1]), c);
             }
-            for(int literal: SATSolver.clauses[cloc]) {
-                if(literal == 0 || literal < -n || literal > n) {
-                    throw new IllegalArgumentException("Illegal literal value " + literal + " in clause " + c);
-                }
-                inClauses.get(getIdx(literal)).add(cloc);
-                clauseCount[getIdx(literal)]++;
+            else { 
+                active.add(c);
             }
-            cloc++;
         }
+        for(int i = 0; i < start[m]; i++) { clauseCount[getIdx(lits[i])]++; }
         
-        inactive = new boolean[SATSolver.clauses.length];
-        decisions = new int[n + 1];
+        inactive = new boolean[m];
+        decisions = new int[n + 2];
+        firstBranch = new boolean[n + 2];
+        branchLiterals = new int[n + 2];
+        branches = new int[n + 2];
+        jumps = new int[n + 2];
+        refutedBranches = new int[n + 2];
+        pureMarks = new int[n + 2];
         // Initialize the queue of the literals to examine.
-        literalQueue = new IntHeap(clauseCount, n, true);
-        for(int literal = 1; literal <= n; literal++) {
-            literalQueue.offer(literal); 
-            literalQueue.offer(-literal);
-        }
-        // Solve the system recursively.
-        if(DPLL(1) > -1) { return null; }
-        // Convert the integer solution array to truth values to return to caller.
-        boolean[] solutionB = new boolean[n + 1];
-        for(int literal = 1; literal <= n; literal++) {
-            solutionB[literal] = solution[getIdx(literal)] > 0;
+        literalQueue = createQueue(heuristic, clauseCount, n, seed);
+        if(watched) {
+            // The original unit clauses are not watched, so make their literals true up front.
+            for(int i = 0; i < activeUnits.size(); i++) {
+                int literal = lits[start[activeUnits.get(i)]];
+                if(solution[getIdx(literal)] < 0) { return false; }
+                if(solution[getIdx(literal)] == 0) { makeLiteralTrueWatched(1, literal); }
+            }
+            activeUnits.clear();
         }
-        return solutionB;
+        return true;
     }
 
-    // The state variables of the search during the recursive backtracking DPLL algorithm.
+    /**
+     * Solve the set of CNF clauses for variables 1, ..., {@code n} using conflict-driven clause
+     * learning with non-chronological backjumping. The parameters and the result are the same
+     * as for {@code solveDPLL}, so either method can be used to solve the same clauses.
+     * @param n The number of propositional variables in the system.
+     * @param clauses The array of clauses, in the same format as for {@code solveDPLL}.
+     * @return Solution array of {@code n + 1} elements giving the truth value of each variable,
+     * or {@code null} if there is no solution to the clauses.
+     */
+    public static boolean[] solveCDCL(int n, int[][] clauses) {
+        CDCLSolver solver = new CDCLSolver(n, clauses);
+        boolean[] solution = solver.solve();
+        // Each decision of the CDCL search corresponds to one recursive call of DPLL.
+        lastCallCount = solver.getDecisionCount() + 1;
+        lastPureLiteralCount = 0;
+        lastRestartCount = solver.getRestarts();
+        return solution;
+    }
+
+    /**
+     * Look for a solution of the set of CNF clauses for variables 1, ..., {@code n} with the
+     * ProbSAT local search of {@code LocalSearchSolver}. Unlike the complete searches, this can
+     * find solutions to large satisfiable problems quickly, but it cannot prove that there is none.
+     * @param n The number of propositional variables in the system.
+     * @param clauses The array of clauses, in the same format as for {@code solveDPLL}.
+     * @param budget The number of flips allowed, or zero for no limit.
+     * @return Solution array of {@code n + 1} elements giving the truth value of each variable,
+     * or {@code null} if no solution was found within the budget, in which case the result is
+     * {@code UNKNOWN} and the clauses may or may not have a solution.
+     */
+    public static boolean[] solveLocal(int n, int[][] clauses, long budget) {
+        LocalSearchSolver solver = new LocalSearchSolver(n, clauses);
+        boolean[] solution = solver.solve(budget);
+        // Each flip of the local search is counted as one call.
+        lastCallCount = (int)Math.min(solver.getFlips(), Integer.MAX_VALUE);
+        lastPureLiteralCount = 0;
+        lastRestartCount = 0;
+        return solution;
+    }
+
+    // The state variables of the search during the backtracking DPLL algorithm.
     
     // Stack used to remember which actions to unroll when backtracking.
-    private static LinkedList<Integer> stack = new LinkedList<Integer>();
+    private int[] stack;
+    private int stackSize;
     // List of literals that are known to be currently pure.
-    private static LinkedList<Integer> pureLiterals = new LinkedList<Integer>();
+    // These are kept in a ring buffer, removed from position pureHead and added after the last one.
+    private int[] pureLiterals;
+    private int pureHead, pureSize;
     // Current state of each literal. If zero, unset. If positive, set true at that
-    // level of recursion. If negative, set false at that level of recursion.
-    private static int[] solution;
-    // The list of clauses in which each literal is in.
-    private static List<List<Integer>> inClauses;
+    // level of the search. If negative, set false at that level of the search.
+    private int[] solution;
+    // The clauses in which each literal is in, as the positions occStart[idx], ...,
+    // occStart[idx + 1] - 1 of the occurrence array.
+    private int[] occStart;
+    private int[] occ;
     // The set of non-unit clauses that are currently active.
-    private static Set<Integer> active = new HashSet<>();
+    private IntSparseSet active;
     // The set of unit clauses that are currently active.
-    private static TreeSet<Integer> activeUnits = new TreeSet<>();
+    private IntSparseSet activeUnits;
     // Array of counters of how many clauses are still possible for each literal.
-    private static int[] possible;
-    // The clauses as arrays of integer literals.
-    private static int[][] clauses;
-    private static int cloc = 0;
+    private int[] possible;
+    // The literals of all clauses, those of clause c in positions start[c], ..., start[c + 1] - 1.
+    // The original clauses are 0, ..., m - 1, followed by the nogoods recorded during the search.
+    private int[] lits;
+    private int[] start;
+    private int m;
     // Quick lookup table of which clauses are no longer active.
-    private static boolean[] inactive;
+    private boolean[] inactive;
     // The priority queue that contains the literals that are still unassigned.
-    private static IntHeap literalQueue;
+    private LiteralQueue literalQueue;
     // Counter of how many active clauses each literal appears in.
-    private static int[] clauseCount;
-    // Decisions made in this recursion path.
-    private static int[] decisions;
+    private int[] clauseCount;
+    // Decisions made in the current path, and whether each one is still in its first branch.
+    private int[] decisions;
+    private boolean[] firstBranch;
+    // The rest of the state of each level of the current path: the literal taken from the queue,
+    // which of its branches is being searched, what level to return to, which branches have been
+    // refuted in the proof, and where the pure literals of the level start in proofPure.
+    private int[] branchLiterals;
+    private int[] branches;
+    private int[] jumps;
+    private int[] refutedBranches;
+    private int[] pureMarks;
+    // The unit propagation scheme used in the current search.
+    private final Propagation propagation;
+    // The way of choosing which branch to try first.
+    private Polarity polarity = Polarity.CLAUSE_COUNT;
+    // The seed for random tie-breaking in the literal queue, or zero for none.
+    private long seed = 0;
+    // The heuristic that orders the literals to branch on.
+    private Heuristic heuristic = Heuristic.CLAUSE_COUNT;
+    // Set when the search should stop as soon as possible.
+    private volatile boolean cancelled = false;
+    // The restart policy given by the user, and the copy of it used in the current search.
+    private RestartPolicy restartPolicy = null;
+    private RestartPolicy restarts;
+    // Set when the search is jumping back to the top to restart.
+    private boolean restartPending;
+    // Whether the saved phases are used to choose the polarity of each decision.
+    private boolean phaseSaving = false;
+    // Whether the clauses are preprocessed, the preprocessor of the most recent search, and
+    // the solver instance currently searching the preprocessed clauses.
+    private boolean preprocessing = false;
+    private Preprocessor preprocessor = null;
+    private volatile SATSolver inner = null;
+    // The budgets of each search, zero meaning no limit, and the outcome of the most recent search.
+    private long conflictBudget = 0, decisionBudget = 0, timeBudget = 0;
+    private Result result = Result.UNKNOWN;
+    // The time when the current search has to stop in nanoseconds, and whether it stopped
+    // because it ran out of its budget.
+    private long deadline;
+    private boolean outOfBudget;
+    // How many recursive calls are made between reading the clock.
+    private static final int CLOCK_INTERVAL = 64;
+    // The progress listener, the time between its reports in milliseconds, and the time and
+    // the number of propagations at the previous report.
+    private ProgressListener listener = null;
+    private long reportInterval;
+    private long lastReport, lastPropagations;
+    // The number of literals currently assigned.
+    private int trailSize;
+    // The proof writer given by the user, and the same writer while a search is writing to it.
+    private DratWriter proof = null;
+    private DratWriter proofOut = null;
+    // Whether the pure literals are made true. They are not when a proof is written together
+    // with nogoods, since a recorded nogood that has not yet been added to the database could
+    // contain the negation of a pure literal, and the checker would not be able to verify
+    // the clause that makes the pure literal true.
+    private boolean pureAllowed;
+    // Room to compose the proof clauses, with the negated decisions of the levels 1, ..., level - 1
+    // in the positions 1, ..., level - 1, and one more literal in front or after them.
+    private int[] proofLits;
+    // The pure literals made true on the current path, whose proof clauses are deleted when the
+    // level that made them true is done, and whether the most recent level refuted its branch.
+    private int[] proofPure;
+    private int proofPureSize;
+    private boolean proofRefuted;
+    // The polarity that each variable had when it was last assigned: +1, -1, or 0 if never.
+    private int[] phase;
+    // The longest nogood to record, or zero for none, and how the nogood database is reduced.
+    private int nogoodLimit = 0;
+    private int reduceInterval = 2000;
+    private double keepRatio = 0.5;
+    // The number of nogoods in the database, and the conflict count at the previous reduction.
+    private int nogoodCount;
+    private int lastReduce;
+    // The literal block distance and the activity of each nogood in the database.
+    private int[] nogoodLBD;
+    private double[] nogoodActivity;
+    private double nogoodInc;
+    // For each literal, the nogoods in the database that contain it, used in the counting mode.
+    private int[][] nogoodOcc;
+    private int[] nogoodOccCount;
+    private static final int[] EMPTY = new int[0];
+    // The nogoods recorded since the previous restart, nogood k in positions pendingStart[k], ...,
+    // pendingStart[k + 1] - 1 of pendingLits. These are added to the database at the next restart.
+    private int[] pendingLits;
+    private int[] pendingStart;
+    private int pendingCount, pendingSize;
+    // For each literal, the clauses in which that literal is currently watched.
+    private int[][] watches;
+    private int[] watchCount;
+    // Queue of the literals made true whose watched clauses have not yet been examined.
+    private int[] propQueue;
+    private int qhead, qtail;
     
     // Named constants used as opcodes when unrolling the stack.
     private static final int MARK = Integer.MAX_VALUE;
@@ -155,91 +833,191 @@ public class SATSolver {
     private static final int LITERAL = Integer.MAX_VALUE - 5;
     private static final int ENQUEUE = Integer.MAX_VALUE - 6;
     
+    // Push the opcode or the mark to the stack, growing the stack as needed.
+    private void push(int op) {
+        if(stackSize == stack.length) { stack = Arrays.copyOf(stack, 2 * stackSize); }
+        stack[stackSize++] = op;
+    }
+    
+    // Push the operand and the opcode of an action to the stack, growing the stack as needed.
+    private void push(int operand, int op) {
+        if(stackSize + 2 > stack.length) { stack = Arrays.copyOf(stack, 2 * stack.length); }
+        stack[stackSize++] = operand;
+        stack[stackSize++] = op;
+    }
+    
+    // Add the literal to the end of the ring buffer of pure literals, growing it as needed.
+    private void addPureLiteral(int literal) {
+        if(pureSize == pureLiterals.length) {
+            int[] bigger = new int[2 * pureSize];
+            for(int i = 0; i < pureSize; i++) {
+                bigger[i] = pureLiterals[(pureHead + i) % pureSize];
+            }
+            pureLiterals = bigger;
+            pureHead = 0;
+        }
+        pureLiterals[(pureHead + pureSize++) % pureLiterals.length] = literal;
+    }
+    
     /* 
      * Remove all clauses that contain the literal made true from the active sets.
      */
-    private static void makeLiteralTrue(int level, int literal) {
+    private void makeLiteralTrue(int level, int literal) {
         int idx = getIdx(literal);
         int idxn = getIdx(-literal);
         
         // Make this literal true and its negation false in the current solution.
         solution[idx] = +level;
         solution[idxn] = -level;
+        propagationCount++;
+        trailSize++;
         // Add the correct opcodes to unroll this decision when backtracking.
-        stack.addLast(literal);
-        stack.addLast(LITERAL);
+        push(literal, LITERAL);
        
         // For each clause where this literal appears, remove it from the active sets.
-        for(int cl: inClauses.get(idx)) {
-            // Ignore the "doubly true" clauses already made true by some previous literal.
-            if(inactive[cl]) { continue; }
-            // Decrease the clause count for every literal that appears in this clause.
-            for(int lit: clauses[cl]) {
-                --clauseCount[getIdx(lit)];
-                literalQueue.decrease(lit);
-                // If this literal no longer appears in any active clause, its negation becomes pure.
-                if(clauseCount[getIdx(lit)] == 0 && clauseCount[getIdx(-lit)] > 0) {
-                    pureLiterals.add(-lit);
-                }
-            }
-            // Remove the clause from the appropriate set.
-            inactive[cl] = true;
-            assert possible[cl] > 0; 
-            if(possible[cl] == 1) { // This clause is a unit clause.
-                assert activeUnits.contains(cl);
-                activeUnits.remove(cl);
-                stack.addLast(cl); 
-                stack.addLast(REMOVE_UNIT);
-            }
-            else { // This clause is not an unit clause.
-                assert active.contains(cl);
-                active.remove(cl);
-                stack.addLast(cl); 
-                stack.addLast(REMOVE_ACT);
-            }
-        }
+        for(int o = occStart[idx]; o < occStart[idx + 1]; o++) { satisfyClause(occ[o]); }
+        for(int o = 0; o < nogoodOccCount[idx]; o++) { satisfyClause(nogoodOcc[idx][o]); }
         
         // For each active clause where the negation of this literal appears, decrement the count
         // of possible literals that still remain in that clause.
-        for(int cl: inClauses.get(idxn)) {
-            // Again, ignore the clauses that are already made true by previous assignments.
-            if(inactive[cl]) { continue; }
-            // That clause now has one fewer possible literals that could be made true.
-            --possible[cl];
-            // If that clause becomes a unit clause, move it to the set of active unit clauses.
-            if(possible[cl] == 1) {
-                assert active.contains(cl);
-                active.remove(cl);
-                activeUnits.add(cl);
-                stack.addLast(cl);
-                stack.addLast(TO_UNIT);
+        for(int o = occStart[idxn]; o < occStart[idxn + 1]; o++) { falsifyLiteral(occ[o]); }
+        for(int o = 0; o < nogoodOccCount[idxn]; o++) { falsifyLiteral(nogoodOcc[idxn][o]); }
+    }
+    
+    // Remove the clause cl made true by some literal from the active sets.
+    private void satisfyClause(int cl) {
+        // Ignore the "doubly true" clauses already made true by some previous literal.
+        if(inactive[cl]) { return; }
+        // Decrease the clause count for every literal that appears in this clause.
+        for(int k = start[cl]; k < start[cl + 1]; k++) {
+            int lit = lits[k];
+            --clauseCount[getIdx(lit)];
+            literalQueue.decrease(lit);
+            // If this literal no longer appears in any active clause, its negation becomes pure.
+            if(clauseCount[getIdx(lit)] == 0 && clauseCount[getIdx(-lit)] > 0) {
+                addPureLiteral(-lit);
             }
-            else { // Otherwise, just note that its possible literals count was decremented.
-                stack.addLast(cl);
-                stack.addLast(DECREMENT);
+        }
+        // Remove the clause from the appropriate set.
+        inactive[cl] = true;
+        assert possible[cl] > 0; 
+        if(possible[cl] == 1) { // This clause is a unit clause.
+            assert activeUnits.contains(cl);
+            activeUnits.remove(cl);
+            push(cl, REMOVE_UNIT);
+        }
+        else { // This clause is not an unit clause.
+            assert active.contains(cl);
+            active.remove(cl);
+            push(cl, REMOVE_ACT);
+        }
+    }
+    
+    // Decrement the count of possible literals in the clause cl in which some literal became false.
+    private void falsifyLiteral(int cl) {
+        // Again, ignore the clauses that are already made true by previous assignments.
+        if(inactive[cl]) { return; }
+        // That clause now has one fewer possible literals that could be made true.
+        --possible[cl];
+        // If that clause becomes a unit clause, move it to the set of active unit clauses.
+        if(possible[cl] == 1) {
+            assert active.contains(cl);
+            active.remove(cl);
+            activeUnits.add(cl);
+            push(cl, TO_UNIT);
+        }
+        else { // Otherwise, just note that its possible literals count was decremented.
+            push(cl, DECREMENT);
+        }
+    }
+
+    // Add the clause cl to the list of clauses watching the literal of index idx.
+    private void watch(int idx, int cl) {
+        if(watchCount[idx] == watches[idx].length) {
+            watches[idx] = Arrays.copyOf(watches[idx], 2 * watchCount[idx]);
+        }
+        watches[idx][watchCount[idx]++] = cl;
+    }
+    
+    /*
+     * Make the literal true in the watched mode. No clauses are examined here, the literal is only
+     * placed in the queue to be propagated, and its assignment is the only action to unroll.
+     */
+    private void makeLiteralTrueWatched(int level, int literal) {
+        solution[getIdx(literal)] = +level;
+        solution[getIdx(-literal)] = -level;
+        propagationCount++;
+        trailSize++;
+        push(literal, LITERAL);
+        propQueue[qtail++] = literal;
+    }
+    
+    /*
+     * Propagate the queued literals through the clauses that watch their negations. Returns
+     * false if some clause had all its literals made false. Since the satisfied clauses are
+     * never removed, nothing about the watches needs to be unrolled when backtracking.
+     */
+    private boolean propagateWatched(int level) {
+        while(qhead < qtail) {
+            int p = propQueue[qhead++];
+            int falseIdx = getIdx(-p);
+            int[] ws = watches[falseIdx];
+            int wn = watchCount[falseIdx];
+            int i = 0, j = 0;
+            watchLoop:
+            while(i < wn) {
+                int cl = ws[i++];
+                int s = start[cl];
+                // Make sure that the literal that became false is the second watched literal.
+                if(lits[s] == -p) { lits[s] = lits[s + 1]; lits[s + 1] = -p; }
+                int first = lits[s];
+                // If the first watched literal is true, the clause is satisfied already.
+                if(solution[getIdx(first)] > 0) { ws[j++] = cl; continue; }
+                // Look for some other literal that is not false to watch instead.
+                for(int k = s + 2; k < start[cl + 1]; k++) {
+                    int lit = lits[k];
+                    if(solution[getIdx(lit)] >= 0) {
+                        lits[s + 1] = lit; lits[k] = -p;
+                        watch(getIdx(lit), cl);
+                        continue watchLoop;
+                    }
+                }
+                // No such literal exists, so the clause is either unit or false.
+                ws[j++] = cl;
+                if(solution[getIdx(first)] < 0) {
+                    bumpClause(cl);
+                    while(i < wn) { ws[j++] = ws[i++]; }
+                    watchCount[falseIdx] = j;
+                    qhead = qtail = 0;
+                    return false;
+                }
+                makeLiteralTrueWatched(level, first);
             }
+            watchCount[falseIdx] = j;
         }
+        qhead = qtail = 0;
+        return true;
     }
 
     /*
      * Unroll the actions that were performed when making some literal true.  
      */
-    private static void unrollStack() {
+    private void unrollStack() {
         do {
             // Find out which action to unroll. 
-            int op = stack.removeLast();
+            int op = stack[--stackSize];
             // All actions have been unrolled at this level.
             if(op == MARK) { return; }
             // Pop the operand of the action from the stack.
-            int cl = stack.removeLast();
+            int cl = stack[--stackSize];
             // Undo removing the clause from the set of active unit clauses.
             if(op == REMOVE_UNIT) {
                 assert inactive[cl];
                 activeUnits.add(cl);
                 inactive[cl] = false;
-                for(int lit: clauses[cl]) { 
-                    clauseCount[getIdx(lit)]++;
-                    literalQueue.increase(lit);
+                for(int k = start[cl]; k < start[cl + 1]; k++) { 
+                    clauseCount[getIdx(lits[k])]++;
+                    literalQueue.increase(lits[k]);
                 }
             }
             // Undo removing the clause from the set of active non-unit clauses.
@@ -247,9 +1025,9 @@ public class SATSolver {
                 assert inactive[cl];
                 active.add(cl);
                 inactive[cl] = false;
-                for(int lit: clauses[cl]) {
-                    clauseCount[getIdx(lit)]++;
-                    literalQueue.increase(lit);
+                for(int k = start[cl]; k < start[cl + 1]; k++) {
+                    clauseCount[getIdx(lits[k])]++;
+                    literalQueue.increase(lits[k]);
                 }
             }
             // Undo changing the clause from non-unit clause to unit clause.
@@ -267,6 +1045,8 @@ public class SATSolver {
             else if(op == LITERAL) {
                 solution[getIdx(cl)] = 0; // cl is here a literal, not a clause...
                 solution[getIdx(-cl)] = 0;
+                phase[Math.abs(cl)] = cl > 0 ? +1 : -1;
+                trailSize--;
             }
             // Undo taking a literal from the queue when it was already assigned.
             else if(op == ENQUEUE) {
@@ -276,31 +1056,233 @@ public class SATSolver {
         } while(true);
     }
 
+    // Bump the priorities of the literals of the clause that took part in a conflict,
+    // and the activity of the clause itself if it is a recorded nogood.
+    private void bumpClause(int cl) {
+        for(int k = start[cl]; k < start[cl + 1]; k++) { literalQueue.bump(lits[k]); }
+        if(cl >= m && (nogoodActivity[cl - m] += nogoodInc) > 1e100) {
+            for(int k = 0; k < nogoodCount; k++) { nogoodActivity[k] *= 1e-100; }
+            nogoodInc *= 1e-100;
+        }
+    }
+    
+    // Record the nogood that refutes the first branch of the decision at the given level: that
+    // decision cannot be true together with the decisions above it that are in their first
+    // branch. The decisions in their second branch can be left out, since each one of them is
+    // implied by the first branch decisions above it and the nogood that refuted its first branch.
+    private void recordNogood(int level) {
+        int size = 1;
+        for(int j = 1; j < level; j++) {
+            if(firstBranch[j]) { size++; }
+        }
+        if(size > nogoodLimit) { return; }
+        if(pendingSize + size > pendingLits.length) {
+            pendingLits = Arrays.copyOf(pendingLits, 2 * (pendingSize + size));
+        }
+        if(pendingCount + 2 > pendingStart.length) {
+            pendingStart = Arrays.copyOf(pendingStart, 2 * pendingStart.length);
+        }
+        pendingLits[pendingSize++] = -decisions[level];
+        for(int j = 1; j < level; j++) {
+            if(firstBranch[j]) { pendingLits[pendingSize++] = -decisions[j]; }
+        }
+        pendingStart[++pendingCount] = pendingSize;
+        // The nogood follows from the clauses of the refuted branches on the current path.
+        if(proofOut != null) { proofOut.add(pendingLits, pendingSize - size, pendingSize); }
+    }
+    
+    /*
+     * Prepare the search to start over from the top, where nothing remains assigned except
+     * the literals of the original unit clauses in the watched mode. The nogoods recorded since
+     * the previous restart are added to the database, which is first reduced if it is time.
+     * Returns false if the clauses were found to have no solution.
+     */
+    private boolean restart() {
+        boolean watched = propagation == Propagation.WATCHED;
+        int oldTotal = m + nogoodCount;
+        boolean reduced = false;
+        if(nogoodLimit > 0 && conflictCount - lastReduce >= reduceInterval) {
+            reduceNogoods();
+            reduced = true;
+        }
+        for(int k = 0; k < pendingCount; k++) {
+            addNogood(pendingStart[k], pendingStart[k + 1]);
+        }
+        pendingCount = pendingSize = 0;
+        int total = m + nogoodCount;
+        if(total > possible.length) {
+            int capacity = Math.max(total, m + 2 * (possible.length - m) + 64);
+            possible = Arrays.copyOf(possible, capacity);
+            inactive = Arrays.copyOf(inactive, capacity);
+            if(!watched) {
+                // The original clauses are all active at the top, so the sets are easy to recreate.
+                active = new IntSparseSet(capacity);
+                activeUnits = new IntSparseSet(capacity);
+                for(int c = 0; c < m; c++) {
+                    if(possible[c] == 1) { activeUnits.add(c); } else { active.add(c); }
+                }
+            }
+        }
+        if(!watched) {
+            for(int c = m; c < Math.max(oldTotal, total); c++) {
+                active.remove(c);
+                activeUnits.remove(c);
+            }
+            Arrays.fill(nogoodOccCount, 0);
+        }
+        else if(reduced) {
+            // The nogoods were renumbered in the reduction, so they are all watched again.
+            for(int idx = 0; idx < 2 * n; idx++) {
+                int j = 0;
+                for(int i = 0; i < watchCount[idx]; i++) {
+                    if(watches[idx][i] < m) { watches[idx][j++] = watches[idx][i]; }
+                }
+                watchCount[idx] = j;
+            }
+        }
+        for(int c = reduced || !watched ? m : oldTotal; c < total; c++) {
+            possible[c] = start[c + 1] - start[c];
+            inactive[c] = false;
+            if(!watched) {
+                if(possible[c] == 1) { activeUnits.add(c); } else { active.add(c); }
+                for(int k = start[c]; k < start[c + 1]; k++) {
+                    int idx = getIdx(lits[k]);
+                    if(nogoodOccCount[idx] == nogoodOcc[idx].length) {
+                        nogoodOcc[idx] = Arrays.copyOf(nogoodOcc[idx], 2 * nogoodOccCount[idx] + 4);
+                    }
+                    nogoodOcc[idx][nogoodOccCount[idx]++] = c;
+                }
+            }
+            else if(possible[c] == 1) {
+                // A unit nogood makes its literal true for good, like an original unit clause.
+                int literal = lits[start[c]];
+                if(solution[getIdx(literal)] < 0) { return false; }
+                if(solution[getIdx(literal)] == 0) { makeLiteralTrueWatched(1, literal); }
+            }
+            else {
+                watch(getIdx(lits[start[c]]), c);
+                watch(getIdx(lits[start[c] + 1]), c);
+            }
+        }
+        if(watched) {
+            // Propagate the literals that remain true at the top again from the start, since
+            // the literals they forced were unrolled.
+            qhead = qtail = 0;
+            for(int i = 0; i + 1 < stackSize; i += 2) {
+                if(stack[i + 1] == LITERAL) { propQueue[qtail++] = stack[i]; }
+            }
+        }
+        return true;
+    }
+    
+    // Add the pending nogood in the given positions of pendingLits to the database.
+    private void addNogood(int from, int to) {
+        int c = m + nogoodCount;
+        int size = to - from;
+        if(c + 2 > start.length) { start = Arrays.copyOf(start, 2 * start.length); }
+        if(start[c] + size > lits.length) { lits = Arrays.copyOf(lits, 2 * (start[c] + size)); }
+        if(nogoodCount == nogoodLBD.length) {
+            nogoodLBD = Arrays.copyOf(nogoodLBD, 2 * nogoodCount);
+            nogoodActivity = Arrays.copyOf(nogoodActivity, 2 * nogoodCount);
+        }
+        System.arraycopy(pendingLits, from, lits, start[c], size);
+        start[c + 1] = start[c] + size;
+        for(int k = from; k < to; k++) {
+            clauseCount[getIdx(pendingLits[k])]++;
+            literalQueue.increase(pendingLits[k]);
+        }
+        // Every literal of the nogood is the negation of a decision made on a level of its own,
+        // so its literal block distance equals its length.
+        nogoodLBD[nogoodCount] = size;
+        nogoodActivity[nogoodCount] = nogoodInc;
+        nogoodCount++;
+        nogoodsLearned++;
+    }
+    
+    // Reduce the nogood database, keeping the nogoods of literal block distance at most two and
+    // the given fraction of the others, preferring low distance and then high activity.
+    private void reduceNogoods() {
+        lastReduce = conflictCount;
+        Integer[] order = new Integer[nogoodCount];
+        int others = 0;
+        for(int k = 0; k < nogoodCount; k++) {
+            order[k] = k;
+            if(nogoodLBD[k] > 2) { others++; }
+        }
+        Arrays.sort(order, (k1, k2) -> nogoodLBD[k1] != nogoodLBD[k2] ? nogoodLBD[k1] - nogoodLBD[k2]
+        : Double.compare(nogoodActivity[k2], nogoodActivity[k1]));
+        boolean[] keep = new boolean[nogoodCount];
+        int kept = 0;
+        for(int k: order) {
+            if(nogoodLBD[k] <= 2) { keep[k] = true; }
+            else if(kept < keepRatio * others) { keep[k] = true; kept++; }
+        }
+        // Compact the nogoods that are kept to the front of their storage, in their original order.
+        int count = 0;
+        for(int k = 0; k < nogoodCount; k++) {
+            int from = start[m + k], to = start[m + k + 1];
+            if(keep[k]) {
+                System.arraycopy(lits, from, lits, start[m + count], to - from);
+                start[m + count + 1] = start[m + count] + to - from;
+                nogoodLBD[count] = nogoodLBD[k];
+                nogoodActivity[count] = nogoodActivity[k];
+                count++;
+            }
+            else {
+                for(int i = from; i < to; i++) {
+                    clauseCount[getIdx(lits[i])]--;
+                    literalQueue.decrease(lits[i]);
+                }
+                if(proofOut != null) { proofOut.delete(lits, from, to); }
+                nogoodsDeleted++;
+            }
+        }
+        nogoodCount = count;
+    }
+    
+    // Choose which of the literal and its negation to try first.
+    private int choosePolarity(int literal) {
+        int v = Math.abs(literal);
+        if(phaseSaving && phase[v] != 0) { return phase[v] * v; }
+        switch(polarity) {
+            case POSITIVE: return Math.abs(literal);
+            case NEGATIVE: return -Math.abs(literal);
+            case REVERSE_COUNT:
+                return clauseCount[getIdx(literal)] < clauseCount[getIdx(-literal)] ? literal : -literal;
+            default:
+                return clauseCount[getIdx(literal)] < clauseCount[getIdx(-literal)] ? -literal : literal;
+        }
+    }
+
     /*
-     * The recursive implementation of the DPLL algorithm to solve a system of CNF formulas.
+     * Make the literals of the unit clauses and the pure literals true at the given level until
+     * none remain. Returns false if some unit clause created a contradiction.
      */
-    private static int DPLL(int level) {
-        // Place a mark to the stack so that unrolling this action knows where to stop.
-        stack.addLast(MARK);
-        callCount++;
-        
-        boolean unitClauseCutoff = false; // Did any unit clause create a contradiction?
-        int jumpLevel = level - 1; // What level to return from this level.
-        // Unit clause and pure literal propagation are handled in a while-loop without
-        // growing the recursion stack, since neither action involves any choice.
+    private boolean propagate(int level) {
+        if(propagation == Propagation.WATCHED) { return propagateWatched(level); }
         unitClauseLoop:
-        while(pureLiterals.size() > 0 || activeUnits.size() > 0) {
+        while(pureSize > 0 || activeUnits.size() > 0) {
             if(activeUnits.size() > 0) {
-                int c = activeUnits.first(); // The unit clause to process.
+                int c = activeUnits.last(); // The unit clause to process.
                 // Find the one literal that is still unassigned in this clause.
-                for(int literal: clauses[c]) {
+                for(int k = start[c]; k < start[c + 1]; k++) {
+                    int literal = lits[k];
                     int idx = getIdx(literal);    
                     if(solution[idx] == 0) { // This is the one
                         int idxn = getIdx(-literal);
                         // Check the clauses that contain negated literal to create cutoff.
-                        for(int cl: inClauses.get(idxn)) {
+                        for(int o = occStart[idxn]; o < occStart[idxn + 1]; o++) {
+                            int cl = occ[o];
                             if(!inactive[cl] && possible[cl] == 1) {
-                                pureLiterals.clear(); unitClauseCutoff = true; break unitClauseLoop;
+                                bumpClause(c); bumpClause(cl);
+                                pureSize = 0; return false;
+                            }
+                        }
+                        for(int o = 0; o < nogoodOccCount[idxn]; o++) {
+                            int cl = nogoodOcc[idxn][o];
+                            if(!inactive[cl] && possible[cl] == 1) {
+                                bumpClause(c); bumpClause(cl);
+                                pureSize = 0; return false;
                             }
                         }
                         makeLiteralTrue(level, literal);
@@ -311,55 +1293,187 @@ public class SATSolver {
             }
             else {
                 pureLiteralCount++;
-                int literal = pureLiterals.removeFirst();
+                int literal = pureLiterals[pureHead];
+                pureHead = (pureHead + 1) % pureLiterals.length;
+                pureSize--;
                 assert clauseCount[getIdx(-literal)] == 0;
                 int idx = getIdx(literal);
                 // Unit clause elimination might have already done this, so better check.
-                if(solution[idx] == 0 && clauseCount[idx] > 0) {
+                if(pureAllowed && solution[idx] == 0 && clauseCount[idx] > 0) {
+                    if(proofOut != null) { provePure(level, literal); }
                     makeLiteralTrue(level, literal);
                 }
             }
         }
+        return true;
+    }
 
-        if(!unitClauseCutoff) {
-            // No active clauses remain, so the entire problem has been solved.
-            if(active.size() == 0) { return -1; }
-            int literal; // The literal to process at this level of recursion.
-            do { // Pop the next literal from the queue until we get an unassigned one.
-                literal = literalQueue.poll();
-                if(solution[getIdx(literal)] != 0) {
-                    stack.addLast(literal); stack.addLast(ENQUEUE);
-                }
-            } while(solution[getIdx(literal)] != 0);
+    /*
+     * Check whether the search has run out of its budget of conflicts, decisions or time. Since
+     * reading the clock is not free, the time budget and the progress listener are looked after
+     * only every so many recursive calls.
+     */
+    private boolean exhausted(int level) {
+        if((conflictBudget > 0 && conflictCount >= conflictBudget)
+        || (decisionBudget > 0 && decisionCount >= decisionBudget)) {
+            outOfBudget = true;
+            return true;
+        }
+        if(callCount % CLOCK_INTERVAL == 0 && (timeBudget > 0 || listener != null)) {
+            long now = System.nanoTime();
+            if(listener != null && now - lastReport >= reportInterval * 1000000) {
+                double rate = (propagationCount - lastPropagations) * 1e9 / Math.max(now - lastReport, 1);
+                listener.progress(decisionCount, rate, level, trailSize);
+                lastReport = now;
+                lastPropagations = propagationCount;
+            }
+            if(timeBudget > 0 && now - deadline >= 0) {
+                outOfBudget = true;
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    // Write the negated decisions of the levels 1, ..., level - 1 to positions 1, ..., level - 1
+    // of proofLits, as the clause that says that the current path contains no solution.
+    private void provePath(int level) {
+        for(int j = 1; j < level; j++) { proofLits[j] = -decisions[j]; }
+    }
+    
+    // Add the clause that makes the pure literal true under the current decisions to the proof.
+    // With the pure literal in front, the checker verifies it by resolving it with each clause
+    // that contains the negation of the literal, all of which are satisfied on the current path.
+    private void provePure(int level, int literal) {
+        provePath(level);
+        proofLits[0] = literal;
+        proofOut.add(proofLits, 0, level);
+        if(proofPureSize == proofPure.length) { proofPure = Arrays.copyOf(proofPure, 2 * proofPureSize); }
+        proofPure[proofPureSize++] = literal;
+    }
+    
+    /*
+     * Finish the proof at the given level. If the level was refuted, either by a conflict in its
+     * propagation or by refuting both branches of its decision, add the clause that negates the
+     * path to the level, which follows from the clauses of the branches by unit propagation.
+     * Then delete the clauses of the branches and of the pure literals of this level, since the
+     * clause of this level subsumes them, or the search has left this part of the tree for good.
+     */
+    private void proveLevel(int level, boolean refutedLevel, int decision, int refuted, int pureMark) {
+        provePath(level);
+        if(refutedLevel) { proofOut.add(proofLits, 1, level); }
+        for(int i = 0; i < 2; i++) {
+            if((refuted & (1 << i)) != 0) {
+                proofLits[level] = i == 0 ? -decision : decision;
+                proofOut.delete(proofLits, 1, level + 1);
+            }
+        }
+        for(int k = pureMark; k < proofPureSize; k++) {
+            proofLits[0] = proofPure[k];
+            proofOut.delete(proofLits, 0, level);
+        }
+        proofPureSize = pureMark;
+        proofRefuted = refutedLevel;
+    }
+
+    // Make the decision of the given level true in a level of its own, to be unrolled when
+    // the branch of that decision is done.
+    private void decide(int level, int lit, boolean first) {
+        // Place a mark to the stack so that unrolling this action knows where to stop.
+        push(MARK);
+        // Make the chosen literal true and prune the active clauses accordingly.
+        decisions[level] = lit;
+        firstBranch[level] = first;
+        decisionCount++;
+        if(propagation == Propagation.WATCHED) { makeLiteralTrueWatched(level, lit); }
+        else { makeLiteralTrue(level, lit); }
+    }
 
-            // Choose the order in which way to try the branches for this literal.
-            int lit;
-            if(clauseCount[getIdx(literal)] < clauseCount[getIdx(-literal)]) { lit = -literal; }
-            else { lit = literal; }
-            // Recursively try out both ways to assign this literal and its negation.
-            for(int i = 0; i < 2; i++) {
-                // Place a mark to the stack so that unrolling this action knows where to stop.
-                stack.addLast(MARK);
-                // Make the chosen literal true and prune the active clauses accordingly.
-                decisions[level] = lit;
-                makeLiteralTrue(level, lit);
-                // Continue the recursion from the reduced set of active clauses.
-                int result = DPLL(level + 1);
-                // If a solution is found, return it posthaste without unrolling the decisions.
-                if(result == -1) { return result; }
-                // Unroll the choice of making this literal true.
+    /*
+     * The DPLL algorithm to solve a system of CNF formulas, starting from the given level. The
+     * search goes down one level for each decision and comes back up when both branches of that
+     * decision are done, but instead of recursion it keeps the state of each level in the arrays
+     * indexed by the level, so the depth of the search is not limited by the thread stack. Returns
+     * -1 if a solution was found, and otherwise the level above the top level, or a level above
+     * that if the search has to jump back higher up, as for a restart.
+     */
+    private int DPLL(int top) {
+        int level = top;
+        int result; // What the level that was just finished returns to the level above it.
+        search:
+        while(true) {
+            // Place a mark to the stack so that unrolling this action knows where to stop.
+            push(MARK);
+            callCount++;
+            // A cancelled search, or one that has run out of its budget, jumps back all the way to the top.
+            if(cancelled || exhausted(level)) { unrollStack(); proofRefuted = false; result = 0; }
+            else {
+                pureMarks[level] = proofPureSize;
+                jumps[level] = level - 1; // What level to return from this level.
+                refutedBranches[level] = 0;
+                // Unit clause and pure literal propagation are handled in a while-loop without
+                // going down a level, since neither action involves any choice.
+                if(!propagate(level)) {
+                    conflictCount++;
+                    literalQueue.decay();
+                    nogoodInc /= 0.999;
+                    // A contradiction at the first level needs no decisions, so there is no point restarting.
+                    if(restarts != null && level > 1 && restarts.conflict(level)) {
+                        restartPending = true;
+                        jumps[level] = 0;
+                    }
+                    if(proofOut != null) { proveLevel(level, true, 0, 0, pureMarks[level]); }
+                    // Unroll the actions done by unit clauses and pure literals.
+                    unrollStack();
+                    result = jumps[level];
+                }
+                else {
+                    // No active clauses remain, so the entire problem has been solved.
+                    if(propagation == Propagation.COUNTING && active.size() == 0) { return -1; }
+                    int literal; // The literal to process at this level.
+                    do { // Pop the next literal from the queue until we get an unassigned one.
+                        // In the watched mode, the problem is solved once every variable has been assigned.
+                        if(literalQueue.getSize() == 0) { return -1; }
+                        literal = literalQueue.poll();
+                        if(solution[getIdx(literal)] != 0) {
+                            push(literal, ENQUEUE);
+                        }
+                    } while(solution[getIdx(literal)] != 0);
+                    // Try first the branch of the chosen polarity, continuing on the next level.
+                    branchLiterals[level] = literal;
+                    branches[level] = 0;
+                    decide(level, choosePolarity(literal), true);
+                    level++;
+                    continue search;
+                }
+            }
+            // Return the result to the levels above, finishing each level that has no branch left.
+            while(true) {
+                if(level == top) { return result; }
+                level--;
+                if(proofOut != null && proofRefuted) { refutedBranches[level] |= 1 << branches[level]; }
+                // Unroll the choice of making the decision of this level true.
                 unrollStack();
                 // If forced to backjump, no point trying out the other branch.
-                if(result < level) { break; }
-                //Try the negated literal for the next round of this loop.
-                lit = -lit;
+                if(result < level) { jumps[level] = result; }
+                else if(branches[level] == 0) {
+                    // The first branch failed, so remember why before trying the second branch.
+                    if(nogoodLimit > 0) { recordNogood(level); }
+                    branches[level] = 1;
+                    decide(level, -decisions[level], false);
+                    level++;
+                    continue search;
+                }
+                // Push the original literal back to the queue.
+                literalQueue.offer(branchLiterals[level]);
+                if(proofOut != null) {
+                    int first = branches[level] == 0 ? decisions[level] : -decisions[level];
+                    proveLevel(level, refutedBranches[level] == 3, first, refutedBranches[level], pureMarks[level]);
+                }
+                // Unroll the actions done by unit clauses and pure literals.
+                unrollStack();
+                result = jumps[level];
             }
-            // Push the original literal back to the queue.
-            literalQueue.offer(literal);
         }
-
-        // Unroll the actions done by unit clauses and pure literals, and return to the previous level.
-        unrollStack();
-        return jumpLevel;
     }
 }
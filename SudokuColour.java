@@ -1,7 +1,8 @@
 import java.util.*;
 import java.util.function.*;
 
-// Demonstrate the ColouringSolver by using it to solve a Sudoku problem.
+// Demonstrate the ColouringSolver by using it to solve a Sudoku problem, and the IntColouringSolver
+// engine with its propagations, where the rows, columns and blocks are all-different constraints.
 
 public class SudokuColour {
 
@@ -78,6 +79,53 @@ public class SudokuColour {
         return true;
     }
     
+    /** Solve the Sudoku puzzle with the given 9*9 board with the {@code IntColouringSolver} engine,
+     * with each row, column and block as an all-different constraint.
+     * @param board The 9*9 integer array that contains the puzzle, with 0 denoting an empty tile.
+     * @param propagation The propagation done after each assignment.
+     * @return Truth value telling if search was successful, in which case the solution is in the {@code board} array.
+     */
+    public static boolean solve(int[][] board, IntColouringSolver.Propagation propagation) {
+        // The edges between the neighbouring tiles, each in both directions.
+        int[] edges = new int[2 * 81 * 20];
+        int size = 0;
+        for(int i = 0; i < 81; i++) {
+            for(int j: neighbours.get(i)) { edges[size++] = i; edges[size++] = j; }
+        }
+        // The colours 0 to 8 stand for the numbers 1 to 9.
+        IntColouringSolver solver = new IntColouringSolver(81, edges, 9);
+        for(int i = 0; i < 81; i++) {
+            int e = board[getX(i)][getY(i)];
+            if(e != 0) { solver.setDomain(i, new int[] { e - 1 }); }
+        }
+        for(int u = 0; u < 9; u++) {
+            int[] row = new int[9], column = new int[9], block = new int[9];
+            int rs = 0, cs = 0, bs = 0;
+            for(int i = 0; i < 81; i++) {
+                if(getY(i) == u) { row[rs++] = i; }
+                if(getX(i) == u) { column[cs++] = i; }
+                if(getB(i) == u) { block[bs++] = i; }
+            }
+            solver.addAllDifferent(row);
+            solver.addAllDifferent(column);
+            solver.addAllDifferent(block);
+        }
+        solver.setPropagation(propagation);
+        long startTime = System.currentTimeMillis();
+        int[] solution = solver.solve();
+        long endTime = System.currentTimeMillis();
+        System.out.println(propagation + ": solution found in " + (endTime - startTime) + " ms. Call count is "
+        + solver.getCallCount() + ", cutoff counts are " + solver.getFcCount() + " for forward checking, "
+        + solver.getAcCount() + " for arc consistency and " + solver.getAllDifferentCount()
+        + " for all-different, which removed " + solver.getAcRemovals() + " and "
+        + solver.getAllDifferentRemovals() + " colours.");
+        if(solution == null) { return false; }
+        for(int i = 0; i < 81; i++) {
+            board[getX(i)][getY(i)] = solution[i] + 1;
+        }
+        return true;
+    }
+
     private static void printBoard(int[][] board) {
         for(int x = 0; x < 9; x++) {
             for(int y = 0; y < 9; y++) {
@@ -103,6 +151,11 @@ public class SudokuColour {
             {0,9,0,0,0,0,4,0,0}
             };  
 
+        for(IntColouringSolver.Propagation propagation: IntColouringSolver.Propagation.values()) {
+            int[][] board = new int[9][];
+            for(int x = 0; x < 9; x++) { board[x] = testBoard[x].clone(); }
+            solve(board, propagation);
+        }
         solve(testBoard);
         printBoard(testBoard);
     }
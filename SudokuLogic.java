@@ -30,7 +30,6 @@ public class SudokuLogic {
         }
         for(int i = 0; i < 81; i++) {
             for(int j = i + 1; j < 81; j++) {
-                if(i == j) { continue; } // No tile is its own neighbour.
                 // Tiles with same x, same y or same block number are neighbours.
                 if(getX(i) == getX(j) || getY(i) == getY(j) || getB(i) == getB(j)) {
                     neighbours.get(i).add(j);
@@ -48,35 +47,77 @@ public class SudokuLogic {
      * @return Truth value telling if search was successful, in which case the solution is in the {@code board} array.
      */
     public static boolean solve(int[][] board) {
-        int loc = 0;
-        int[][] clauses = new int[7371][];
-
-        // If a tile has value v, then none of its neighbours can have the value v.
-        for(int i = 0; i < 81; i++) {
-            int v = board[getX(i)][getY(i)];
-            for(int n: neighbours.get(i)) {
-                // Each pair (i, n) of neighbour tiles needs to be handled only once.
-                if(i > n) { continue; }
-                // For tile with no initial value, create clause allowing any value.
-                if(v == 0) {
-                    for(int vv = 0; vv < 9; vv++) {
-                        int[] c = new int[2];
-                        c[0] = -litIdx(getX(i), getY(i), vv);
-                        c[1] = -litIdx(getX(n), getY(n), vv);
-                        clauses[loc++] = c;
+        return solve(board, CardinalityEncoder.Encoding.SEQUENTIAL_COUNTER);
+    }
+    
+    /** 
+     * Solve the Sudoku puzzle with the given 9*9 board, encoding the constraints that each value
+     * appears at most once in each row, column and block with the given encoding.
+     * @param board The 9*9 integer array that contains the puzzle, with 0 denoting an empty tile.
+     * @param encoding The encoding of the at most one constraints.
+     * @return Truth value telling if search was successful, in which case the solution is in the {@code board} array.
+     */
+    public static boolean solve(int[][] board, CardinalityEncoder.Encoding encoding) {
+        CardinalityEncoder clauses = new CardinalityEncoder(9 * 9 * 9, encoding);
+        if(encoding == CardinalityEncoder.Encoding.PAIRWISE) {
+            // Two tiles can share both a block and a row or a column, so the pairwise encoding
+            // goes through the pairs of neighbour tiles to create the clause of each pair once.
+            for(int i = 0; i < 81; i++) {
+                int v = board[getX(i)][getY(i)];
+                for(int n: neighbours.get(i)) {
+                    // Each pair (i, n) of neighbour tiles needs to be handled only once.
+                    if(i > n) { continue; }
+                    // For tile with no initial value, the two tiles cannot have the same value.
+                    if(v == 0) {
+                        for(int vv = 0; vv < 9; vv++) {
+                            clauses.addClause(-litIdx(getX(i), getY(i), vv), -litIdx(getX(n), getY(n), vv));
+                        }
                     }
+                    // If a tile has a known value, none of its neighbours can have that value.
+                    else { clauses.addClause(-litIdx(getX(n), getY(n), v - 1)); }
                 }
-                // If a tile has a known value, none of its neighbours can have that value.
-                else {
-                    int[] c = new int[1]; // Nice unit clauses to propagate in the solver.
-                    c[0] = -litIdx(getX(n), getY(n), v - 1);
-                    clauses[loc++] = c;
+            }
+        }
+        else {
+            // A tile lies in three units, so remember the unit clauses already created.
+            boolean[] unitDone = new boolean[9 * 9 * 9 + 1];
+            // Each value can appear at most once in each column, row and block of nine tiles.
+            for(int u = 0; u < 27; u++) {
+                int[] unit = new int[9];
+                for(int k = 0; k < 9; k++) {
+                    if(u < 9) { unit[k] = getIdx(u, k); } // Column of the tiles with x = u.
+                    else if(u < 18) { unit[k] = getIdx(k, u - 9); } // Row of the tiles with y = u - 9.
+                    else { // Block number u - 18.
+                        int b = u - 18;
+                        unit[k] = getIdx(3 * (b / 3) + k / 3, 3 * (b % 3) + k % 3);
+                    }
+                }
+                for(int v = 0; v < 9; v++) {
+                    // If some tile of the unit has the known value v, none of the others can have it.
+                    boolean known = false;
+                    for(int k = 0; k < 9; k++) {
+                        if(board[getX(unit[k])][getY(unit[k])] == v + 1) { known = true; }
+                    }
+                    // Otherwise, at most one of the tiles with no initial value can have the value v.
+                    int[] lits = new int[9];
+                    int size = 0;
+                    for(int k = 0; k < 9; k++) {
+                        int x = getX(unit[k]), y = getY(unit[k]);
+                        if(board[x][y] != 0) { continue; }
+                        int lit = litIdx(x, y, v);
+                        if(!known) { lits[size++] = lit; }
+                        else if(!unitDone[lit]) { // Nice unit clauses to propagate.
+                            unitDone[lit] = true;
+                            clauses.addClause(-lit);
+                        }
+                    }
+                    clauses.atMostOne(Arrays.copyOf(lits, size));
                 }
             }
         }
 
         // Every tile must have at least one value. (We don't need to constrain each tile to
-        // have at most one value, since the neighbour tile constraints will ensure that.)
+        // have at most one value, since the constraints of its column, row and block ensure that.)
         for(int i = 0; i < 81; i++) {
             int x = getX(i);
             int y = getY(i);
@@ -85,22 +126,23 @@ public class SudokuLogic {
                 for(int v = 0; v < 9; v++) {
                     c[v] = litIdx(x, y, v);
                 }
-                clauses[loc++] = c;
+                clauses.addClause(c);
             }
             else {
-                int[] c = new int[1]; // Another nice unit clause to propagate.
-                c[0] = litIdx(x, y, board[x][y] - 1);
-                clauses[loc++] = c;
+                // Nice unit clause to propagate in the solver.
+                clauses.addClause(litIdx(x, y, board[x][y] - 1));
             }
         }
         
-        System.out.println("Created " + loc + " clauses for Sudoku.");
+        System.out.println("Created " + clauses.getClauseCount() + " clauses for Sudoku with "
+        + clauses.getVariableCount() + " variables.");
         
         long startTime = System.currentTimeMillis();
-        boolean[] solution = SATSolver.solveDPLL(9 * 9 * 9, clauses);
+        boolean[] solution = SATSolver.solveDPLL(clauses.getVariableCount(), clauses.getClauses());
         long endTime = System.currentTimeMillis();
         System.out.println("Solved in " + (endTime - startTime) + " ms with "
         + SATSolver.getCallCount() + " recursive calls.");
+        if(solution == null) { return false; }
         
         for(int x = 0; x < 9; x++) {
             for(int y = 0; y < 9; y++) {
@@ -111,7 +153,7 @@ public class SudokuLogic {
                 }
             }
         }
-        return false;
+        return true;
     }
 
     private static void printBoard(int[][] board) {
@@ -14,6 +14,12 @@ public class WordPacking {
      */
     public static String getAuthorName() { return "Kokkarinen, Ilkka"; }
     
+    // The size of the encoding of the most recent word packing, for measuring the encodings.
+    private static volatile int lastClauseCount = 0;
+    public static int getClauseCount() { return lastClauseCount; }
+    private static volatile int lastVariableCount = 0;
+    public static int getVariableCount() { return lastVariableCount; }
+    
     // Decide whether two words cannot be placed into same bin.
     private static boolean inConflict(String w1, String w2) {
         for(int i = 0; i < 5; i++) {
@@ -35,6 +41,19 @@ public class WordPacking {
      * in that bin.
      */
     public static List<List<String>> wordPack(List<String> words) {
+        return wordPack(words, CardinalityEncoder.Encoding.PAIRWISE);
+    }
+    
+    /**
+     * Distributes the given words into bins as in {@code wordPack(List<String>)}, encoding the
+     * constraints that allow at most one of the words that have the same character in the same
+     * position into each bin with the given encoding.
+     * @param words The words to be distributed into bins.
+     * @param encoding The encoding of the at most one constraints.
+     * @return A list of list of strings, so that each of these lists contains the words
+     * in that bin.
+     */
+    public static List<List<String>> wordPack(List<String> words, CardinalityEncoder.Encoding encoding) {
         int n = words.size();
         int[][] conflicts = new int[26][5];
         // Count which letters are used in how many words and positions.
@@ -54,83 +73,125 @@ public class WordPacking {
         }
         
         // For each word, create the list of later words that it is in conflict with.
-        int totalConflictCount = 0;
         List<List<Integer>> conflict = new ArrayList<>();
         for(int i = 0; i < words.size(); i++) {
             List<Integer> cc = new ArrayList<>();
             String word = words.get(i);
             for(int j = i + 1; j < words.size(); j++) {
                 if(inConflict(word, words.get(j))) {
-                    cc.add(j); totalConflictCount++;
+                    cc.add(j);
                 }
             }
             conflict.add(cc);
         }
         
-        int kmin = max, kmax = n;
-        List<List<String>> result = null;
-        while(kmin <= kmax) {
-            // Number of bins to attempt this round.
-            int k = (kmin + kmax) / 2;
-            
-            // Create the clauses for placing the given n words into k separate bins.
-            int clauseCount = max + n + k * totalConflictCount;
-            int[][] clauses = new int[clauseCount][];
-            int loc = 0; int[] curr;
-            
-            // Words in the longest conflict are all placed in particular bins.
-            // This does not eliminate the solution, if one exists.
-            for(int i = 0; i < words.size(); i++) {
-                if(words.get(i).charAt(col) == let) {
-                    curr = new int[1]; curr[0] = enc(i, loc, k);
-                    clauses[loc++] = curr;
-                }
-            }
-            assert loc == max;
-            
-            // Every word must be in some bin.
-            for(int i = 0; i < n; i++) {
-                curr = new int[k];
-                for(int b = 0; b < k; b++) { curr[b] = enc(i, b, k); }
-                clauses[loc++] = curr;
+        // Place the words greedily into the first bin that they fit in. The number of bins
+        // used gives an upper bound that every later search needs to improve on.
+        List<List<Integer>> adjacent = new ArrayList<>();
+        for(int i = 0; i < n; i++) { adjacent.add(new ArrayList<Integer>()); }
+        for(int i = 0; i < n; i++) {
+            for(int j: conflict.get(i)) { adjacent.get(i).add(j); adjacent.get(j).add(i); }
+        }
+        int[] greedyBin = new int[n];
+        int kk = 0;
+        for(int i = 0; i < n; i++) {
+            boolean[] used = new boolean[kk + 1];
+            for(int j: adjacent.get(i)) {
+                if(j < i) { used[greedyBin[j]] = true; }
             }
-            
-            // No two words in conflict with each other may be in the same bin.
+            int b = 0;
+            while(used[b]) { b++; }
+            greedyBin[i] = b;
+            if(b == kk) { kk++; }
+        }
+        List<List<String>> result = new ArrayList<>();
+        for(int b = 0; b < kk; b++) { result.add(new ArrayList<String>()); }
+        for(int i = 0; i < n; i++) { result.get(greedyBin[i]).add(words.get(i)); }
+        
+        // Create the clauses for placing the n words into the kk bins of the greedy solution,
+        // once for the entire search. Bin b may be used only if its enable variable e_b is true,
+        // and the bins are enabled in order, so that assuming not-e_k leaves only k bins.
+        CardinalityEncoder clauses = new CardinalityEncoder(n * kk + kk, encoding);
+        
+        // Words in the longest conflict are all placed in particular bins.
+        // This does not eliminate the solution, if one exists.
+        int loc = 0;
+        for(int i = 0; i < n; i++) {
+            if(words.get(i).charAt(col) == let) { clauses.addClause(enc(i, loc++, kk)); }
+        }
+        assert loc == max;
+        
+        // Every word must be in some bin.
+        for(int i = 0; i < n; i++) {
+            int[] curr = new int[kk];
+            for(int b = 0; b < kk; b++) { curr[b] = enc(i, b, kk); }
+            clauses.addClause(curr);
+        }
+        
+        // No two words in conflict with each other may be in the same bin. Two words may have
+        // the same character in several positions, so the pairwise encoding uses the conflicts.
+        if(encoding == CardinalityEncoder.Encoding.PAIRWISE) {
             for(int i = 0; i < n; i++) {
                 for(int j: conflict.get(i)) {
-                    for(int b = 0; b < k; b++) {
-                        curr = new int[2]; curr[0] = -enc(i, b, k); curr[1] = -enc(j, b, k);
-                        clauses[loc++] = curr;
+                    for(int b = 0; b < kk; b++) { clauses.addClause(-enc(i, b, kk), -enc(j, b, kk)); }
+                }
+            }
+        }
+        else {
+            // The words that have the same character in the same position are all in conflict with
+            // each other, so the counter encodings allow at most one of them in each bin.
+            for(int c = 0; c < 26; c++) {
+                for(int j = 0; j < 5; j++) {
+                    if(conflicts[c][j] < 2) { continue; }
+                    int[] group = new int[conflicts[c][j]];
+                    int size = 0;
+                    for(int i = 0; i < n; i++) {
+                        if(words.get(i).charAt(j) - 'a' == c) { group[size++] = i; }
+                    }
+                    for(int b = 0; b < kk; b++) {
+                        int[] lits = new int[size];
+                        for(int k = 0; k < size; k++) { lits[k] = enc(group[k], b, kk); }
+                        clauses.atMostOne(lits);
                     }
                 }
             }
-            
-            // All that should produce the correct number of clauses.
-            assert loc == clauseCount : "" + loc + " " + clauseCount;
-            
-            // Then, just have the SAT Solver compute the solution for us.
-            boolean[] solution = SATSolver.solveDPLL(n * k, clauses);
+        }
+        
+        // A word may be placed only in an enabled bin, and each bin enables the previous one.
+        for(int b = 0; b < kk; b++) {
+            int e = n * kk + b + 1;
+            for(int i = 0; i < n; i++) { clauses.addClause(-enc(i, b, kk), e); }
+            if(b > 0) { clauses.addClause(-e, e - 1); }
+        }
+        lastClauseCount = clauses.getClauseCount();
+        lastVariableCount = clauses.getVariableCount();
+        CDCLSolver solver = new CDCLSolver(clauses.getVariableCount(), clauses.getClauses());
+        
+        // Binary search for the smallest number of bins, keeping what was learned in between.
+        int kmin = max, kmax = kk - 1;
+        while(kmin <= kmax) {
+            // Number of bins to attempt this round.
+            int k = (kmin + kmax) / 2;
+            boolean[] solution = solver.solve(-(n * kk + k + 1));
             
             // If a solution was found, convert it into the requested list of bins.
-            if(solution != null) {                
+            if(solution != null) {
                 result = new ArrayList<>();
                 for(int b = 0; b < k; b++) {
-                    result.add(new ArrayList<String>());                    
+                    result.add(new ArrayList<String>());
                 }
-                boolean[] taken = new boolean[n];
-                for(int v = 0; v <= n * k; v++) {
-                    if(solution[v]) {
-                        int i = (v - 1) / k;
-                        if(taken[i]) { continue; }
-                        taken[i] = true;
-                        int b = (v - 1) % k;
-                        assert enc(i, b, k) == v;
-                        result.get(b).add(words.get(i));
+                for(int i = 0; i < n; i++) {
+                    for(int b = 0; b < k; b++) {
+                        if(solution[enc(i, b, kk)]) { result.get(b).add(words.get(i)); break; }
                     }
                 }
                 kmax = k - 1;
             }
-            else { kmin = k + 1; }
+            else {
+                // If the clauses have no solution even without assuming anything, neither does any k.
+                if(solver.getFailedAssumptions().length == 0) { break; }
+                kmin = k + 1;
+            }
         }
         return result;
     }